@@ -4,11 +4,16 @@ import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.proxy.Player;
 import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.JoinConfiguration;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 import ua.co.tensa.config.Lang;
 import ua.co.tensa.placeholders.PlaceholderManager;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 
 public class Message {
     // Hardcoded console prefix - used for ALL console messages
@@ -122,6 +127,14 @@ public class Message {
 
     // Localization helpers
     public static void sendLang(CommandSource recipient, Lang key, String... replacements) {
+        String prefix = Lang.LangConfig.prefix;
+        String value = langText(key, replacements);
+        String full = (prefix == null || prefix.isEmpty()) ? value : prefix + value;
+        send(recipient, full);
+    }
+
+    /** Localized text with {key} replacements applied, without the prefix. */
+    public static String langText(Lang key, String... replacements) {
         String value = Lang.LangConfig.getCleanText(key.name().toLowerCase());
         if (replacements != null && replacements.length > 1) {
             for (int i = 0; i < replacements.length - 1; i += 2) {
@@ -132,9 +145,25 @@ public class Message {
                 }
             }
         }
-        String prefix = Lang.LangConfig.prefix;
-        String full = (prefix == null || prefix.isEmpty()) ? value : prefix + value;
-        send(recipient, full);
+        return value;
+    }
+
+    /**
+     * Sends lines as one chat component instead of one message per line, so long lists
+     * cost a single packet. The lang prefix goes on the first line only.
+     */
+    public static void sendLines(CommandSource recipient, List<String> lines) {
+        if (lines == null || lines.isEmpty()) return;
+        Player player = recipient instanceof Player p ? p : null;
+        List<CompletableFuture<Component>> parts = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            String line = i == 0 ? langPrefix() + lines.get(i) : lines.get(i);
+            parts.add(PlaceholderManager.resolveComponentAsync(player, line));
+        }
+        CompletableFuture.allOf(parts.toArray(new CompletableFuture[0]))
+                .thenAccept(ignored -> recipient.sendMessage(Component.join(
+                        JoinConfiguration.newlines(),
+                        parts.stream().map(CompletableFuture::join).toList())));
     }
 
     // ========== Console Logging Methods ==========
@@ -14,7 +14,8 @@ import ua.co.tensa.config.Database;
 import ua.co.tensa.config.Lang;
 import ua.co.tensa.config.data.LangYAML;
 import ua.co.tensa.modules.Modules;
-import ua.co.tensa.modules.rcon.server.RconServerModule;
+import ua.co.tensa.players.PlayerNameIndex;
+import ua.co.tensa.players.PlayerPrefetch;
 import ua.co.tensa.placeholders.PlaceholderManager;
 
 import java.nio.file.Path;
@@ -63,12 +64,14 @@ public class Tensa {
     public void onEnable(ProxyInitializeEvent event) {
         Tensa.pluginContainer = server.getPluginManager().fromInstance(this).orElseThrow(() -> new IllegalStateException("Plugin not found in PluginManager"));
         loadPlugin();
+        server.getEventManager().register(this, new PlayerPrefetch());
+        server.getEventManager().register(this, new PlayerNameIndex());
         Message.logHeader();
     }
 
     @Subscribe
     public void onShutdown(ProxyShutdownEvent event) {
-        RconServerModule.disable();
+        Modules.shutdown();
         if (database != null) {
             database.close();
         }
@@ -0,0 +1,151 @@
+package ua.co.tensa.commands;
+
+import com.velocitypowered.api.command.CommandSource;
+import ua.co.tensa.Message;
+import ua.co.tensa.Tensa;
+import ua.co.tensa.config.DataTransfer;
+import ua.co.tensa.config.Database;
+import ua.co.tensa.config.Lang;
+import ua.co.tensa.modules.meta.UserMetaModule;
+import ua.co.tensa.modules.meta.UserMetaStore;
+import ua.co.tensa.modules.playertime.PlayerTimeModule;
+import ua.co.tensa.modules.playertime.PlayerTimeTracker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * /tensa data export|import - streams player_times and user_meta to and from CSV files in
+ * the plugin's exports folder. Routed from {@link HelpCommand}.
+ */
+public final class DataCommand {
+
+    private DataCommand() {}
+
+    public static void execute(CommandSource source, String[] args) {
+        if (!source.hasPermission("tensa.data")) {
+            Message.sendLang(source, Lang.no_perms);
+            return;
+        }
+        Database db = Tensa.database;
+        if (db == null || !db.enabled) {
+            Message.sendLang(source, Lang.db_disabled);
+            return;
+        }
+        String sub = args.length > 0 ? args[0].toLowerCase(Locale.ROOT) : "";
+        switch (sub) {
+            case "export" -> export(source, db, args.length > 1 ? args[1] : "all");
+            case "import" -> {
+                if (args.length < 2) {
+                    Message.sendLang(source, Lang.data_usage);
+                    return;
+                }
+                importFile(source, db, args[1], args.length > 2 && args[2].equalsIgnoreCase("add"));
+            }
+            default -> Message.sendLang(source, Lang.data_usage);
+        }
+    }
+
+    public static List<String> suggest(String[] args) {
+        if (args.length <= 1) {
+            return filter(List.of("export", "import"), args.length == 0 ? "" : args[0]);
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("export")) {
+            List<String> tables = new ArrayList<>();
+            for (DataTransfer.Table table : DataTransfer.Table.values()) tables.add(table.table);
+            tables.add("all");
+            return filter(tables, args[1]);
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("import")) {
+            return filter(DataTransfer.files(), args[1]);
+        }
+        if (args.length == 3 && args[0].equalsIgnoreCase("import")) {
+            return filter(List.of("add"), args[2]);
+        }
+        return List.of();
+    }
+
+    private static void export(CommandSource source, Database db, String name) {
+        if (name.equalsIgnoreCase("all")) {
+            // One transfer at a time, so tables are exported back to back
+            CompletableFuture<?> chain = CompletableFuture.completedFuture(null);
+            for (DataTransfer.Table table : DataTransfer.Table.values()) {
+                chain = chain.thenCompose(ignored -> start(source, db, table));
+            }
+            return;
+        }
+        DataTransfer.Table table = DataTransfer.Table.byName(name);
+        if (table == null) {
+            Message.sendLang(source, Lang.data_usage);
+            return;
+        }
+        start(source, db, table);
+    }
+
+    private static void importFile(CommandSource source, Database db, String fileName, boolean add) {
+        DataTransfer.Table table;
+        try {
+            table = DataTransfer.tableOf(fileName);
+        } catch (IOException | IllegalArgumentException e) {
+            Message.sendLang(source, Lang.data_import_failed, "{error}", String.valueOf(e.getMessage()));
+            return;
+        }
+        // File, sharded and memory storage never read the SQL table, so an import there would change nothing live
+        UserMetaStore meta = UserMetaModule.getStore();
+        if (table == DataTransfer.Table.USER_META && meta != null && meta.getStorageType() != UserMetaStore.StorageType.DATABASE) {
+            Message.sendLang(source, Lang.data_meta_storage, "{storage}", meta.getStorageType().name().toLowerCase(Locale.ROOT));
+            return;
+        }
+        Message.sendLang(source, Lang.data_importing, "{file}", fileName);
+        // Chunks commit as they go, so even a failed import may have changed cached rows
+        report(source, DataTransfer.importFile(db, fileName, add, progress(source)), false)
+                .whenComplete((result, ex) -> refresh(table));
+    }
+
+    private static void refresh(DataTransfer.Table table) {
+        if (table == DataTransfer.Table.PLAYER_TIMES) {
+            PlayerTimeTracker tracker = PlayerTimeModule.getTracker();
+            if (tracker != null) tracker.reloadStored();
+        } else if (table == DataTransfer.Table.USER_META) {
+            UserMetaStore meta = UserMetaModule.getStore();
+            if (meta != null) meta.reloadCached();
+        }
+    }
+
+    private static CompletableFuture<DataTransfer.Result> start(CommandSource source, Database db, DataTransfer.Table table) {
+        Message.sendLang(source, Lang.data_exporting, "{table}", table.table);
+        return report(source, DataTransfer.export(db, table, progress(source)), true);
+    }
+
+    private static CompletableFuture<DataTransfer.Result> report(CommandSource source, CompletableFuture<DataTransfer.Result> future, boolean export) {
+        return future.whenComplete((result, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                Message.sendLang(source, export ? Lang.data_export_failed : Lang.data_import_failed,
+                        "{error}", String.valueOf(cause.getMessage()));
+                return;
+            }
+            Message.sendLang(source, export ? Lang.data_exported : Lang.data_imported,
+                    "{rows}", String.valueOf(result.rows()),
+                    "{table}", result.table().table,
+                    "{file}", result.file().getFileName().toString());
+            if (result.skipped() > 0) {
+                Message.sendLang(source, Lang.data_skipped, "{skipped}", String.valueOf(result.skipped()));
+            }
+        });
+    }
+
+    private static DataTransfer.Progress progress(CommandSource source) {
+        return (table, rows, percent) -> Message.sendLang(source, percent >= 0 ? Lang.data_progress_percent : Lang.data_progress,
+                "{table}", table.table, "{rows}", String.valueOf(rows), "{percent}", String.valueOf(percent));
+    }
+
+    private static List<String> filter(List<String> options, String prefix) {
+        String lower = prefix.toLowerCase(Locale.ROOT);
+        return options.stream().filter(s -> s.toLowerCase(Locale.ROOT).startsWith(lower)).toList();
+    }
+}
@@ -0,0 +1,125 @@
+package ua.co.tensa.commands;
+
+import com.velocitypowered.api.command.CommandSource;
+import ua.co.tensa.Message;
+import ua.co.tensa.Tensa;
+import ua.co.tensa.config.Database;
+import ua.co.tensa.config.DatabaseExecutor;
+import ua.co.tensa.config.DatabaseMetrics;
+import ua.co.tensa.config.Lang;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * /tensa db stats|reset - pool gauges, executor queue, cache hit rate and query latency percentiles.
+ * Routed from {@link HelpCommand}.
+ */
+public final class DatabaseCommand {
+
+    private static final int MAX_ROWS = 15;
+
+    private DatabaseCommand() {}
+
+    public static void execute(CommandSource source, String[] args) {
+        if (!source.hasPermission("tensa.db")) {
+            Message.sendLang(source, Lang.no_perms);
+            return;
+        }
+        Database db = Tensa.database;
+        if (db == null || !db.enabled) {
+            Message.sendLang(source, Lang.db_disabled);
+            return;
+        }
+        String sub = args.length > 0 ? args[0].toLowerCase(Locale.ROOT) : "stats";
+        switch (sub) {
+            case "reset" -> {
+                if (db.metrics() != null) db.metrics().reset();
+                Message.sendLang(source, Lang.db_reset);
+            }
+            case "stats" -> stats(source, db);
+            default -> Message.sendLang(source, Lang.db_usage);
+        }
+    }
+
+    public static List<String> suggest(String[] args) {
+        if (args.length <= 1) {
+            String prefix = args.length == 0 ? "" : args[0].toLowerCase(Locale.ROOT);
+            return List.of("stats", "reset").stream().filter(s -> s.startsWith(prefix)).toList();
+        }
+        return List.of();
+    }
+
+    private static void stats(CommandSource source, Database db) {
+        Lang state = switch (db.breakerState()) {
+            case CLOSED -> Lang.db_state_available;
+            case HALF_OPEN -> Lang.db_state_reconnecting;
+            case OPEN -> Lang.db_state_unavailable;
+        };
+        List<String> lines = new ArrayList<>();
+        lines.add(Message.langText(Lang.db_header,
+                "{dialect}", db.dialect().name().toLowerCase(Locale.ROOT),
+                "{state}", Message.langText(state)));
+
+        DatabaseMetrics.PoolStats pool = db.poolStats();
+        if (pool != null) {
+            lines.add("  " + Message.langText(Lang.db_pool,
+                    "{active}", String.valueOf(pool.active()),
+                    "{idle}", String.valueOf(pool.idle()),
+                    "{total}", String.valueOf(pool.total()),
+                    "{waiting}", highlight(pool.waiting())));
+        }
+
+        DatabaseExecutor.Stats exec = db.executor().stats();
+        lines.add("  " + Message.langText(Lang.db_executor,
+                "{queued}", String.valueOf(exec.queued()),
+                "{capacity}", String.valueOf(exec.capacity()),
+                "{active}", String.valueOf(exec.active()),
+                "{threads}", String.valueOf(exec.poolSize()),
+                "{dropped}", highlight(exec.dropped()),
+                "{caller_runs}", highlight(exec.callerRuns()),
+                "{wait_avg}", ms(exec.avgWaitMs()),
+                "{wait_max}", String.valueOf(exec.maxWaitMs()))
+                + (exec.virtualThreads() ? Message.langText(Lang.db_executor_virtual) : ""));
+
+        DatabaseMetrics.CacheStats cache = db.cacheStats();
+        if (cache != null) {
+            long lookups = cache.hits() + cache.misses();
+            String rate = lookups == 0 ? "-" : String.format(Locale.ROOT, "%.1f%%", cache.hits() * 100d / lookups);
+            lines.add("  " + Message.langText(Lang.db_cache,
+                    "{entries}", String.valueOf(cache.entries()), "{rate}", rate));
+        }
+
+        DatabaseMetrics metrics = db.metrics();
+        if (metrics == null) {
+            lines.add("  " + Message.langText(Lang.db_metrics_disabled));
+            Message.sendLines(source, lines);
+            return;
+        }
+        lines.add("  " + row(metrics.acquireStats()));
+        List<DatabaseMetrics.LatencyStats> queries = metrics.queryStats();
+        lines.add(Message.langText(Lang.db_queries_header));
+        if (queries.isEmpty()) {
+            lines.add("  " + Message.langText(Lang.db_queries_none));
+        }
+        for (int i = 0; i < Math.min(MAX_ROWS, queries.size()); i++) {
+            lines.add("  " + row(queries.get(i)));
+        }
+        Message.sendLines(source, lines);
+    }
+
+    private static String row(DatabaseMetrics.LatencyStats s) {
+        return Message.langText(Lang.db_query_row,
+                "{table}", s.table(), "{op}", s.op(), "{count}", String.valueOf(s.count()),
+                "{p50}", ms(s.p50Ms()), "{p95}", ms(s.p95Ms()), "{p99}", ms(s.p99Ms()), "{max}", ms(s.maxMs()));
+    }
+
+    private static String ms(double value) {
+        return String.format(Locale.ROOT, value < 10 ? "%.2f" : "%.0f", value);
+    }
+
+    private static String highlight(long value) {
+        return (value > 0 ? "<red>" : "<white>") + value + (value > 0 ? "</red>" : "</white>");
+    }
+}
@@ -5,20 +5,56 @@ import com.velocitypowered.api.command.SimpleCommand;
 import ua.co.tensa.Message;
 import ua.co.tensa.config.Lang;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public class HelpCommand implements SimpleCommand {
 
     @Override
     public void execute(Invocation invocation) {
         CommandSource source = invocation.source();
-        if (!hasPermission(invocation)) {
+        String[] args = invocation.arguments();
+        if (args.length > 0 && args[0].equalsIgnoreCase("db")) {
+            DatabaseCommand.execute(source, Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("data")) {
+            DataCommand.execute(source, Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (!source.hasPermission("tensa.help")) {
             Message.sendLang(source, Lang.no_perms);
             return;
         }
         Message.sendLang(source, Lang.help);
     }
 
+    @Override
+    public CompletableFuture<List<String>> suggestAsync(Invocation invocation) {
+        String[] args = invocation.arguments();
+        CommandSource source = invocation.source();
+        if (args.length <= 1) {
+            String prefix = args.length == 0 ? "" : args[0].toLowerCase();
+            List<String> subs = new ArrayList<>();
+            if (source.hasPermission("tensa.db") && "db".startsWith(prefix)) subs.add("db");
+            if (source.hasPermission("tensa.data") && "data".startsWith(prefix)) subs.add("data");
+            return CompletableFuture.completedFuture(subs);
+        }
+        if (args[0].equalsIgnoreCase("db") && source.hasPermission("tensa.db")) {
+            return CompletableFuture.completedFuture(DatabaseCommand.suggest(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args[0].equalsIgnoreCase("data") && source.hasPermission("tensa.data")) {
+            // Lists the exports folder, so keep it off the command thread
+            return CompletableFuture.supplyAsync(() -> DataCommand.suggest(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        return CompletableFuture.completedFuture(List.of());
+    }
+
     @Override
     public boolean hasPermission(Invocation invocation) {
-        return invocation.source().hasPermission("tensa.help");
+        return invocation.source().hasPermission("tensa.help") || invocation.source().hasPermission("tensa.db")
+                || invocation.source().hasPermission("tensa.data");
     }
 }
@@ -7,6 +7,7 @@ import com.velocitypowered.api.proxy.server.RegisteredServer;
 import ua.co.tensa.Message;
 import ua.co.tensa.Tensa;
 import ua.co.tensa.config.Lang;
+import ua.co.tensa.players.PlayerNameIndex;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -41,7 +42,8 @@ public class PlayerSendCommand implements SimpleCommand {
             return;
         }
 
-        Optional<Player> player = Tensa.server.getPlayer(args[0]);
+        PlayerNameIndex.Entry online = PlayerNameIndex.findOnline(args[0]);
+        Optional<Player> player = online == null ? Tensa.server.getPlayer(args[0]) : Tensa.server.getPlayer(online.uuid());
         if (player.isEmpty()) {
             Message.sendLang(source, Lang.player_not_found, "{player}", args[0]);
             return;
@@ -56,10 +58,9 @@ public class PlayerSendCommand implements SimpleCommand {
         ArrayList<String> args = new ArrayList<>();
         int argNum = invocation.arguments().length;
         if (argNum == 0 || argNum == 1) {
-            args.add("all");
-            for (Player player : Tensa.server.getAllPlayers()) {
-                args.add(player.getUsername().trim());
-            }
+            String prefix = argNum == 0 ? "" : invocation.arguments()[0];
+            if ("all".startsWith(prefix.toLowerCase())) args.add("all");
+            args.addAll(PlayerNameIndex.completeOnline(prefix, 50));
         }
         if (argNum == 2) {
             Tensa.server.getAllServers().forEach(serverConnection -> args.add(serverConnection.getServerInfo().getName()));
@@ -40,6 +40,7 @@ public final class ReloadCommand implements SimpleCommand {
             if (Tensa.database.connect()) {
                 ua.co.tensa.config.DatabaseInitializer initializer = new ua.co.tensa.config.DatabaseInitializer(Tensa.database);
                 initializer.initializeTables();
+                ua.co.tensa.players.PlayerNameIndex.load(Tensa.database);
             }
         }
         // Apply module enable/disable changes and soft-reload enabled modules via module API
@@ -0,0 +1,110 @@
+package ua.co.tensa.config;
+
+import ua.co.tensa.Message;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Connection circuit breaker for the database.
+ * After enough consecutive connection failures the breaker opens and callers fail fast.
+ * A single background probe then retries with exponential backoff (half-open) and
+ * closes the breaker once the database answers again. Transitions are logged once.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final BooleanSupplier probe;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile long backoffMs;
+    private volatile long openedAt;
+    private volatile boolean shutdown;
+    private ScheduledExecutorService scheduler;
+
+    public CircuitBreaker(int failureThreshold, long initialBackoffMs, long maxBackoffMs, BooleanSupplier probe) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.initialBackoffMs = Math.max(100, initialBackoffMs);
+        this.maxBackoffMs = Math.max(this.initialBackoffMs, maxBackoffMs);
+        this.probe = probe;
+    }
+
+    public boolean allowRequest() {
+        return state.get() == State.CLOSED;
+    }
+
+    public State state() {
+        return state.get();
+    }
+
+    public void recordSuccess() {
+        if (failures.get() != 0) {
+            failures.set(0);
+        }
+    }
+
+    public void recordFailure(String reason) {
+        if (failures.incrementAndGet() >= failureThreshold) {
+            trip(reason);
+        }
+    }
+
+    /** Opens the breaker immediately; only the first caller schedules the probe. */
+    public void trip(String reason) {
+        if (shutdown || !state.compareAndSet(State.CLOSED, State.OPEN)) return;
+        openedAt = System.currentTimeMillis();
+        backoffMs = initialBackoffMs;
+        Message.database("CIRCUIT OPEN", "Database unavailable (" + reason + "), queries fail fast until it recovers");
+        schedule(backoffMs);
+    }
+
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private synchronized void schedule(long delayMs) {
+        if (shutdown) return;
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tensa-db-reconnect");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        scheduler.schedule(this::probe, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void probe() {
+        if (shutdown || !state.compareAndSet(State.OPEN, State.HALF_OPEN)) return;
+        boolean ok;
+        try {
+            ok = probe.getAsBoolean();
+        } catch (RuntimeException e) {
+            ok = false;
+        }
+        if (shutdown) return;
+        if (ok) {
+            failures.set(0);
+            state.set(State.CLOSED);
+            long downSec = (System.currentTimeMillis() - openedAt) / 1000;
+            Message.database("CIRCUIT CLOSED", "Database reachable again after " + downSec + "s");
+        } else {
+            state.set(State.OPEN);
+            backoffMs = Math.min(maxBackoffMs, backoffMs * 2);
+            schedule(backoffMs);
+        }
+    }
+}
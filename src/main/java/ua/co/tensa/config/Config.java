@@ -36,5 +36,19 @@ public class Config {
     public int getDatabasePort() { return app.databasePort; }
     public boolean getSsl() { return app.useSsl; }
     public String getDatabaseTablePrefix() { return app.tablePrefix; }
+    public boolean useServerPreparedStatements() { return app.serverPreparedStatements; }
+    public int getPreparedStatementCacheSize() { return app.preparedStatementCacheSize; }
+    public int getExecutorThreads() { return app.executorThreads; }
+    public int getExecutorQueueCapacity() { return app.executorQueueCapacity; }
+    public String getExecutorOverflowPolicy() { return app.executorOverflowPolicy; }
+    public boolean useVirtualThreads() { return app.executorVirtualThreads; }
+    public int getBreakerFailureThreshold() { return app.breakerFailureThreshold; }
+    public long getBreakerInitialBackoffMs() { return app.breakerInitialBackoffMs; }
+    public long getBreakerMaxBackoffMs() { return app.breakerMaxBackoffMs; }
+    public boolean queryCacheEnabled() { return app.queryCacheEnable; }
+    public int getQueryCacheTtlSeconds() { return app.queryCacheTtlSeconds; }
+    public int getQueryCacheMaxEntries() { return app.queryCacheMaxEntries; }
+    public boolean databaseMetricsEnabled() { return app.databaseMetricsEnable; }
+    public long getSlowQueryMs() { return app.slowQueryMs; }
     public boolean useUUID() { return app.useUuid; }
 }
@@ -0,0 +1,361 @@
+package ua.co.tensa.config;
+
+import ua.co.tensa.Tensa;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams player_times and user_meta to and from CSV files in the exports folder.
+ * Exports read through a forward-only cursor, imports upsert in chunks of
+ * {@value #CHUNK} rows, so memory use does not depend on table size. Transfers run one
+ * at a time on the DB executor.
+ *
+ * <p>Format: a header row naming the columns, then one row per record. An empty
+ * unquoted field is NULL, {@code ""} is an empty string.
+ */
+public final class DataTransfer {
+
+    public enum Table {
+        PLAYER_TIMES("player_times", "uuid, name, play_time", "uuid", "name, play_time", "name, +play_time"),
+        USER_META("user_meta", "uuid, meta_key, meta_value", "uuid, meta_key", "meta_value", "meta_value");
+
+        public final String table;
+        final String columns;
+        final String keys;
+        final String replace;
+        final String add;
+
+        Table(String table, String columns, String keys, String replace, String add) {
+            this.table = table;
+            this.columns = columns;
+            this.keys = keys;
+            this.replace = replace;
+            this.add = add;
+        }
+
+        List<String> header() {
+            return Arrays.stream(columns.split(",")).map(String::trim).toList();
+        }
+
+        public static Table byName(String name) {
+            for (Table t : values()) {
+                if (t.table.equalsIgnoreCase(name)) return t;
+            }
+            return null;
+        }
+
+        static Table byHeader(List<String> header) {
+            for (Table t : values()) {
+                if (t.header().equals(header)) return t;
+            }
+            return null;
+        }
+
+        // Typed values for one CSV record, or null if it does not fit the table
+        Object[] parse(List<String> fields) {
+            if (fields.size() != 3 || parseUuid(fields.get(0)) == null) return null;
+            return switch (this) {
+                case PLAYER_TIMES -> {
+                    try {
+                        long playTime = Long.parseLong(fields.get(2));
+                        yield playTime < 0 ? null : new Object[]{fields.get(0), fields.get(1), playTime};
+                    } catch (NumberFormatException e) {
+                        yield null;
+                    }
+                }
+                case USER_META -> fields.get(1) == null ? null : new Object[]{fields.get(0), fields.get(1), fields.get(2)};
+            };
+        }
+    }
+
+    public record Result(Table table, long rows, long skipped, Path file) {}
+
+    /** Called every {@value #REPORT_EVERY} rows; {@code percent} is -1 when unknown. */
+    public interface Progress {
+        void update(Table table, long rows, int percent);
+    }
+
+    private static final int CHUNK = 1000;
+    private static final long REPORT_EVERY = 50_000;
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final AtomicBoolean RUNNING = new AtomicBoolean();
+
+    private DataTransfer() {}
+
+    public static Path directory() {
+        return Tensa.pluginPath.resolve("exports");
+    }
+
+    /** CSV files available for import, by file name. */
+    public static List<String> files() {
+        try (var stream = Files.list(directory())) {
+            return stream.map(p -> p.getFileName().toString()).filter(n -> n.endsWith(".csv")).sorted().toList();
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+
+    public static CompletableFuture<Result> export(Database db, Table table, Progress progress) {
+        return run(db, () -> exportSync(db, table, progress));
+    }
+
+    /**
+     * Imports a file from the exports folder; the table is taken from its header. Existing
+     * rows are overwritten, or with {@code add} their play time is added to.
+     */
+    public static CompletableFuture<Result> importFile(Database db, String fileName, boolean add, Progress progress) {
+        Path file;
+        try {
+            file = resolve(fileName);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return run(db, () -> importSync(db, file, add, progress));
+    }
+
+    /** Table a file in the exports folder would be imported into, from its header; null if none matches. */
+    public static Table tableOf(String fileName) throws IOException {
+        try (Reader reader = Files.newBufferedReader(resolve(fileName), StandardCharsets.UTF_8)) {
+            List<String> header = new CsvReader(reader).next();
+            return header == null ? null : Table.byHeader(header);
+        }
+    }
+
+    // Only plain files inside the exports folder
+    private static Path resolve(String fileName) {
+        Path dir = directory().toAbsolutePath().normalize();
+        Path file = dir.resolve(fileName).normalize();
+        if (!file.startsWith(dir) || !Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No such file in exports: " + fileName);
+        }
+        return file;
+    }
+
+    private interface Work {
+        Result run() throws IOException;
+    }
+
+    private static CompletableFuture<Result> run(Database db, Work work) {
+        if (!RUNNING.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Another import or export is running"));
+        }
+        CompletableFuture<Result> future;
+        try {
+            future = db.executor().submit(() -> {
+                try {
+                    return work.run();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, false);
+        } catch (RuntimeException e) {
+            RUNNING.set(false);
+            throw e;
+        }
+        return future.whenComplete((r, ex) -> RUNNING.set(false));
+    }
+
+    private static Result exportSync(Database db, Table table, Progress progress) throws IOException {
+        Files.createDirectories(directory());
+        Path file = directory().resolve(table.table + "-" + STAMP.format(LocalDateTime.now()) + ".csv");
+        Path partial = file.resolveSibling(file.getFileName() + ".part");
+        Long total = db.select(table.table, "COUNT(*)", "1 = 1", rs -> rs.next() ? rs.getLong(1) : 0L);
+        int columns = table.header().size();
+        long[] written = {0};
+        try (BufferedWriter out = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+            writeRecord(out, table.header().toArray(new String[0]));
+            long rows = db.stream(table.table, table.columns, "1 = 1", row -> {
+                String[] fields = new String[columns];
+                for (int i = 0; i < columns; i++) {
+                    fields[i] = row.getString(i + 1);
+                }
+                try {
+                    writeRecord(out, fields);
+                } catch (IOException e) {
+                    throw new SQLException("Export write failed: " + e.getMessage(), e);
+                }
+                if (++written[0] % REPORT_EVERY == 0) {
+                    progress.update(table, written[0], total == null || total == 0 ? -1 : (int) (written[0] * 100 / total));
+                }
+            });
+            if (rows < 0) {
+                throw new IOException("Reading " + table.table + " failed after " + written[0] + " rows");
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Result(table, written[0], 0, file);
+    }
+
+    private static Result importSync(Database db, Path file, boolean add, Progress progress) throws IOException {
+        long size = Math.max(1, Files.size(file));
+        try (CountingInputStream counted = new CountingInputStream(Files.newInputStream(file));
+             Reader reader = new BufferedReader(new InputStreamReader(counted, StandardCharsets.UTF_8), 64 * 1024)) {
+            CsvReader csv = new CsvReader(reader);
+            List<String> header = csv.next();
+            Table table = header == null ? null : Table.byHeader(header);
+            if (table == null) {
+                throw new IOException("Unknown header " + header + "; expected one of "
+                        + Arrays.stream(Table.values()).map(t -> String.join(",", t.header())).toList());
+            }
+            String update = add ? table.add : table.replace;
+            List<Object[]> chunk = new ArrayList<>(CHUNK);
+            long rows = 0;
+            long skipped = 0;
+            List<String> record;
+            while ((record = csv.next()) != null) {
+                Object[] values = table.parse(record);
+                if (values == null) {
+                    skipped++;
+                    continue;
+                }
+                chunk.add(values);
+                if (chunk.size() == CHUNK) {
+                    writeChunk(db, table, update, chunk, rows);
+                    long before = rows;
+                    rows += chunk.size();
+                    chunk.clear();
+                    if (rows / REPORT_EVERY != before / REPORT_EVERY) {
+                        progress.update(table, rows, (int) Math.min(100, counted.count * 100 / size));
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                writeChunk(db, table, update, chunk, rows);
+                rows += chunk.size();
+            }
+            return new Result(table, rows, skipped, file);
+        }
+    }
+
+    // Each chunk commits on its own; a failure reports how far the import got
+    private static void writeChunk(Database db, Table table, String update, List<Object[]> chunk, long done) throws IOException {
+        if (!db.upsertBatch(table.table, table.columns, table.keys, update, chunk)) {
+            throw new IOException("Writing " + table.table + " failed after " + done + " rows");
+        }
+    }
+
+    static void writeRecord(Writer out, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) out.write(',');
+            String field = fields[i];
+            if (field == null) continue;
+            if (field.isEmpty() || field.indexOf(',') >= 0 || field.indexOf('"') >= 0
+                    || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(field.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(field);
+            }
+        }
+        out.write('\n');
+    }
+
+    private static UUID parseUuid(String value) {
+        try {
+            return value == null ? null : UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** RFC 4180 records, including quoted fields with line breaks. */
+    static final class CsvReader {
+        private final Reader in;
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        List<String> next() throws IOException {
+            int c = in.read();
+            if (c == -1) return null;
+            List<String> fields = new ArrayList<>(4);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (c == '"' && field.isEmpty() && !quoted) {
+                    quoted = true;
+                    while (true) {
+                        c = in.read();
+                        if (c == -1) throw new IOException("Unterminated quoted field");
+                        if (c == '"') {
+                            c = in.read();
+                            if (c != '"') break;
+                        }
+                        field.append((char) c);
+                    }
+                    continue;
+                }
+                if (c == ',') {
+                    fields.add(value(field, quoted));
+                    field.setLength(0);
+                    quoted = false;
+                } else if (c == '\n' || c == -1) {
+                    fields.add(value(field, quoted));
+                    return fields;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = in.read();
+            }
+        }
+
+        private static String value(StringBuilder field, boolean quoted) {
+            return !quoted && field.isEmpty() ? null : field.toString();
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -7,32 +7,60 @@ import ua.co.tensa.Tensa;
 
 import java.math.BigInteger;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 public class Database {
 
     private volatile HikariDataSource dataSource;
     private String tablePrefix;
+    private SqlDialect dialect = SqlDialect.MARIADB;
+
+    // SQL text per (kind, table, shape); built once and reused for every call
+    private final Map<TemplateKey, Query> templates = new ConcurrentHashMap<>();
 
     public boolean enabled = false;
 
-    // Dedicated executor for database operations to prevent blocking ForkJoinPool
-    private static final ExecutorService DB_EXECUTOR = Executors.newFixedThreadPool(
-        Math.max(4, Runtime.getRuntime().availableProcessors()),
-        runnable -> {
-            Thread thread = new Thread(runnable);
-            thread.setName("tensa-db-" + thread.getId());
-            thread.setDaemon(true);
-            return thread;
-        }
-    );
+    private final List<Runnable> closeHooks = new CopyOnWriteArrayList<>();
+
+    // Shared reconnect state: one background probe instead of every caller rebuilding the pool
+    private final CircuitBreaker breaker = new CircuitBreaker(
+            Tensa.config.getBreakerFailureThreshold(),
+            Tensa.config.getBreakerInitialBackoffMs(),
+            Tensa.config.getBreakerMaxBackoffMs(),
+            this::probeConnection);
+
+    // Opt-in read-through cache used by the *Cached reads; null when disabled in config
+    private final QueryCache cache = Tensa.config.queryCacheEnabled()
+            ? new QueryCache(Tensa.config.getQueryCacheTtlSeconds(), Tensa.config.getQueryCacheMaxEntries())
+            : null;
+
+    // Latency histograms and slow-query log; null when disabled in config
+    private final DatabaseMetrics metrics = Tensa.config.databaseMetricsEnabled()
+            ? new DatabaseMetrics(Tensa.config.getDatabaseTablePrefix(), Tensa.config.getSlowQueryMs())
+            : null;
+
+    // Upper bound of parameter sets sent per executeBatch() round trip
+    private static final int BATCH_CHUNK_SIZE = 500;
+
+    // Rows fetched per round trip by stream()
+    private static final int STREAM_FETCH_SIZE = 500;
 
     public synchronized boolean connect() {
         String type = Tensa.config.getDatabaseType();
         tablePrefix = Tensa.config.getDatabaseTablePrefix();
+        dialect = SqlDialect.fromType(type);
+        templates.clear();
 
         return switch (type.toLowerCase()) {
             case "h2" -> connectH2();
@@ -40,7 +68,28 @@ public class Database {
         };
     }
 
+    /**
+     * Registers work to run while the pool is still open, right before {@link #close()} shuts it
+     * (reload and proxy shutdown). Used to drain write-behind buffers.
+     */
+    public void addCloseHook(Runnable hook) {
+        closeHooks.add(hook);
+    }
+
+    public void removeCloseHook(Runnable hook) {
+        closeHooks.remove(hook);
+    }
+
     public void close() {
+        for (Runnable hook : closeHooks) {
+            try {
+                hook.run();
+            } catch (RuntimeException e) {
+                Message.database("CLOSE HOOK FAILED", String.valueOf(e.getMessage()));
+            }
+        }
+        closeHooks.clear();
+        breaker.shutdown();
         if (dataSource != null) {
             dataSource.close();
             Message.database("POOL CLOSED", "Connection pool shutdown successfully");
@@ -49,34 +98,86 @@ public class Database {
     }
 
     public static void shutdownExecutor() {
-        DB_EXECUTOR.shutdown();
-        try {
-            if (!DB_EXECUTOR.awaitTermination(5, TimeUnit.SECONDS)) {
-                DB_EXECUTOR.shutdownNow();
-                if (!DB_EXECUTOR.awaitTermination(5, TimeUnit.SECONDS)) {
-                    Message.database("EXECUTOR SHUTDOWN FAILED", "Database executor did not terminate");
-                }
-            }
-        } catch (InterruptedException e) {
-            DB_EXECUTOR.shutdownNow();
-            Thread.currentThread().interrupt();
+        DatabaseExecutor.shutdown();
+    }
+
+    /** Executor behind every *Async method; exposes queue and latency gauges. */
+    public DatabaseExecutor executor() {
+        return DatabaseExecutor.get();
+    }
+
+    private <T> CompletableFuture<T> async(Supplier<T> work) {
+        if (!breaker.allowRequest()) return unavailable();
+        return DatabaseExecutor.get().submit(work, false);
+    }
+
+    // Reads may be shed under the drop-oldest overflow policy; writes never are
+    private <T> CompletableFuture<T> asyncRead(Supplier<T> work) {
+        if (!breaker.allowRequest()) return unavailable();
+        return DatabaseExecutor.get().submit(work, true);
+    }
+
+    private static <T> CompletableFuture<T> unavailable() {
+        return CompletableFuture.failedFuture(new DatabaseUnavailableException("Database is unavailable, reconnect pending"));
+    }
+
+    /** False while the circuit breaker is open; sync calls then return null/false without touching the pool. */
+    public boolean isAvailable() {
+        return breaker.allowRequest();
+    }
+
+    public CircuitBreaker.State breakerState() {
+        return breaker.state();
+    }
+
+    /** Query latency histograms, or null when metrics are disabled. */
+    public DatabaseMetrics metrics() {
+        return metrics;
+    }
+
+    /** Live Hikari pool gauges, or null when no pool is open. */
+    public DatabaseMetrics.PoolStats poolStats() {
+        HikariDataSource ds = dataSource;
+        if (ds == null || ds.isClosed() || ds.getHikariPoolMXBean() == null) return null;
+        var pool = ds.getHikariPoolMXBean();
+        return new DatabaseMetrics.PoolStats(pool.getActiveConnections(), pool.getIdleConnections(),
+                pool.getTotalConnections(), pool.getThreadsAwaitingConnection());
+    }
+
+    /** Cached entries, hits and misses of the query cache, or null when it is disabled. */
+    public DatabaseMetrics.CacheStats cacheStats() {
+        return cache == null ? null : new DatabaseMetrics.CacheStats(cache.size(), cache.hits(), cache.misses());
+    }
+
+    public void checkConnection() {
+        HikariDataSource ds = dataSource;
+        if (ds == null || ds.isClosed()) {
+            breaker.trip("no connection pool");
         }
     }
 
-    public synchronized void checkConnection() {
-        if (dataSource == null || dataSource.isClosed()) {
-            connect();
+    // Half-open probe: rebuild the pool only if it is gone, otherwise ask it for a valid connection
+    private boolean probeConnection() {
+        HikariDataSource ds = dataSource;
+        if (ds == null || ds.isClosed()) {
+            return connect();
+        }
+        try (Connection conn = ds.getConnection()) {
+            return conn.isValid(2);
+        } catch (SQLException e) {
+            return false;
         }
     }
 
     private boolean connectH2() {
         try {
-            String url = "jdbc:h2:file:./plugins/tensa/storage/server;MODE=MySQL;DB_CLOSE_DELAY=-1";
+            String url = "jdbc:h2:file:./plugins/tensa/storage/server;MODE=MySQL;DB_CLOSE_DELAY=-1"
+                    + ";QUERY_CACHE_SIZE=" + Tensa.config.getPreparedStatementCacheSize();
             HikariConfig cfg = new HikariConfig();
             cfg.setJdbcUrl(url);
             cfg.setUsername("sa");
             cfg.setPassword("");
-            cfg.setMaximumPoolSize(5);
+            cfg.setMaximumPoolSize(dialect.maxPoolSize());
             cfg.setMinimumIdle(1);
             cfg.setConnectionTimeout(10_000);
             cfg.setIdleTimeout(60_000);
@@ -109,16 +210,22 @@ public class Database {
                     + "&maxReconnects=3"
                     + "&connectTimeout=10000"
                     + "&socketTimeout=20000"
-                    + "&tcpKeepAlive=true";
+                    + "&tcpKeepAlive=true"
+                    // Send addBatch() groups as bulk/multi-row statements instead of one round trip per row
+                    + "&useBulkStmts=true";
             HikariConfig cfg = new HikariConfig();
             cfg.setJdbcUrl(url);
             cfg.setUsername(Tensa.config.getDatabaseUser());
             cfg.setPassword(Tensa.config.getDatabasePassword());
             cfg.setDriverClassName("org.mariadb.jdbc.Driver");
-            cfg.setMaximumPoolSize(10);
+            cfg.setMaximumPoolSize(dialect.maxPoolSize());
             cfg.setMinimumIdle(2);
             cfg.setConnectionTimeout(10_000);
             cfg.setPoolName("TensaDBPool");
+            // Server-side prepared statements, cached per connection by the driver
+            cfg.addDataSourceProperty("useServerPrepStmts", Tensa.config.useServerPreparedStatements());
+            cfg.addDataSourceProperty("cachePrepStmts", true);
+            cfg.addDataSourceProperty("prepStmtCacheSize", Tensa.config.getPreparedStatementCacheSize());
 
             // Discover server-side timeouts to tune Hikari and avoid stale connections
             long serverWaitTimeoutSec = 28_800; // sane default (8h)
@@ -180,23 +287,48 @@ public class Database {
     }
 
     private <T> T executeSync(String query, Object[] parameters, SQLExecutor<T> executor) {
+        return withConnection(conn -> {
+            long start = System.nanoTime();
+            try (PreparedStatement stmt = prepareStatement(conn, query, parameters)) {
+                return executor.execute(stmt);
+            } finally {
+                recordLatency(query, start);
+            }
+        });
+    }
+
+    private <T> T withConnection(ConnectionCallback<T> callback) {
+        return withConnection(callback, true);
+    }
+
+    private <T> T withConnection(ConnectionCallback<T> callback, boolean retry) {
         checkConnection();
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = prepareStatement(conn, query, parameters)) {
-            return executor.execute(stmt);
+        HikariDataSource ds = dataSource;
+        if (ds == null || !breaker.allowRequest()) {
+            return null;
+        }
+        try (Connection conn = acquire(ds)) {
+            T result = callback.execute(conn);
+            breaker.recordSuccess();
+            return result;
+        } catch (SQLException e) {
+            if (!isConnectionException(e)) {
+                Message.database("QUERY ERROR", e.getMessage());
+                return null;
+            }
+            if (!retry) {
+                breaker.recordFailure(e.getMessage());
+                return null;
+            }
+        }
+        // A stale socket is retried once on another pooled connection; Hikari evicts the broken one
+        try (Connection conn = acquire(ds)) {
+            T result = callback.execute(conn);
+            breaker.recordSuccess();
+            return result;
         } catch (SQLException e) {
             if (isConnectionException(e)) {
-                Message.database("RECONNECTING", "Lost connection, attempting to reconnect");
-                if (connect()) {
-                    try (Connection conn2 = dataSource.getConnection();
-                         PreparedStatement stmt2 = prepareStatement(conn2, query, parameters)) {
-                        return executor.execute(stmt2);
-                    } catch (SQLException ex) {
-                        Message.database("RETRY FAILED", ex.getMessage());
-                    }
-                } else {
-                    Message.database("RECONNECT FAILED", "Unable to re-establish connection");
-                }
+                breaker.recordFailure(e.getMessage());
             } else {
                 Message.database("QUERY ERROR", e.getMessage());
             }
@@ -204,6 +336,211 @@ public class Database {
         return null;
     }
 
+    private Connection acquire(HikariDataSource ds) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return ds.getConnection();
+        } finally {
+            if (metrics != null) metrics.recordAcquire(System.nanoTime() - start);
+        }
+    }
+
+    private void recordLatency(String query, long start) {
+        if (metrics != null) metrics.record(query, System.nanoTime() - start);
+    }
+
+    // Not retried: a commit lost with the socket may still have applied, and batches carry
+    // additive upserts (play_time + ?) that must not run twice; callers keep failed rows instead
+    private boolean executeBatchSync(String query, List<Object[]> rows) {
+        if (rows == null || rows.isEmpty()) return true;
+        Boolean done = withConnection(conn -> {
+            long start = System.nanoTime();
+            try {
+                return runBatch(conn, query, rows);
+            } finally {
+                recordLatency(query, start);
+            }
+        }, false);
+        return Boolean.TRUE.equals(done);
+    }
+
+    // All parameter sets go through one statement on one connection and commit together
+    private boolean runBatch(Connection conn, String query, List<Object[]> rows) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            addBatches(conn, query, rows);
+            conn.commit();
+            return true;
+        } catch (SQLException e) {
+            try { conn.rollback(); } catch (SQLException ignored) {}
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void addBatches(Connection conn, String query, List<Object[]> rows) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            int pending = 0;
+            for (Object[] row : rows) {
+                bindParameters(stmt, row);
+                stmt.addBatch();
+                if (++pending == BATCH_CHUNK_SIZE) {
+                    stmt.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                stmt.executeBatch();
+            }
+        }
+    }
+
+    /** One statement and its parameter sets, for {@link #executeTransaction}. */
+    public record Batch(Query query, List<Object[]> rows) {}
+
+    /**
+     * Runs several batched statements on one connection in a single transaction:
+     * either every row of every batch commits or none does. Like batches, it is not retried
+     * on a dropped connection, since the commit may have landed before the socket broke.
+     */
+    public boolean executeTransaction(List<Batch> batches) {
+        try {
+            Boolean done = withConnection(conn -> {
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try {
+                    for (Batch batch : batches) {
+                        if (batch.rows().isEmpty()) continue;
+                        long start = System.nanoTime();
+                        try {
+                            addBatches(conn, batch.query().sql(), batch.rows());
+                        } finally {
+                            recordLatency(batch.query().sql(), start);
+                        }
+                    }
+                    conn.commit();
+                    return true;
+                } catch (SQLException e) {
+                    try { conn.rollback(); } catch (SQLException ignored) {}
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(autoCommit);
+                }
+            }, false);
+            return Boolean.TRUE.equals(done);
+        } finally {
+            batches.forEach(batch -> invalidate(batch.query().table()));
+        }
+    }
+
+    public CompletableFuture<Boolean> executeTransactionAsync(List<Batch> batches) {
+        return async(() -> executeTransaction(batches));
+    }
+
+    /** Work for {@link #inTransaction}; returning false rolls everything back. */
+    @FunctionalInterface
+    public interface TransactionWork {
+        boolean run(Transaction tx) throws SQLException;
+    }
+
+    /** Plain, unbatched statements on the connection of one {@link #inTransaction} call. */
+    public final class Transaction {
+        private final Connection conn;
+
+        private Transaction(Connection conn) {
+            this.conn = conn;
+        }
+
+        /** Runs one write and returns the number of rows it matched. */
+        public int update(String sql, Object... values) throws SQLException {
+            long start = System.nanoTime();
+            try (PreparedStatement stmt = prepareStatement(conn, sql, values)) {
+                return stmt.executeUpdate();
+            } finally {
+                recordLatency(sql, start);
+            }
+        }
+
+        public <T> T query(String sql, ResultSetHandler<T> handler, Object... values) throws SQLException {
+            long start = System.nanoTime();
+            try (PreparedStatement stmt = prepareStatement(conn, sql, values);
+                 ResultSet rs = stmt.executeQuery()) {
+                return handler.handle(rs);
+            } finally {
+                recordLatency(sql, start);
+            }
+        }
+    }
+
+    /**
+     * Runs statements that depend on each other's results on one connection in a single
+     * transaction. It commits only when the work returns true; returns whether it did.
+     * Not retried, so a lost commit acknowledgement never applies the work twice. The SQL is
+     * raw, so the whole query cache is invalidated.
+     */
+    public boolean inTransaction(TransactionWork work) {
+        try {
+            Boolean done = withConnection(conn -> {
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try {
+                    if (!work.run(new Transaction(conn))) {
+                        conn.rollback();
+                        return false;
+                    }
+                    conn.commit();
+                    return true;
+                } catch (SQLException e) {
+                    try { conn.rollback(); } catch (SQLException ignored) {}
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(autoCommit);
+                }
+            }, false);
+            return Boolean.TRUE.equals(done);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Runs work while holding a named lock shared by every proxy on this database, so they
+     * take turns. On MariaDB one pooled connection holds GET_LOCK for the duration; the H2
+     * file database is only ever opened by this proxy, so the work simply runs. Returns null
+     * when the lock was not acquired within the timeout.
+     */
+    public <T> T withLock(String name, int timeoutSeconds, Supplier<T> work) {
+        if (dialect == SqlDialect.H2) {
+            return work.get();
+        }
+        HikariDataSource ds = dataSource;
+        return withConnection(conn -> {
+            if (!lockCall(conn, "SELECT GET_LOCK(?, ?)", name, timeoutSeconds)) {
+                Message.database("LOCK TIMEOUT", name + " is held by another proxy");
+                return null;
+            }
+            try {
+                return work.get();
+            } finally {
+                try {
+                    lockCall(conn, "SELECT RELEASE_LOCK(?)", name);
+                } catch (SQLException e) {
+                    // The lock belongs to the session; a pooled connection would keep holding it
+                    if (ds != null) ds.evictConnection(conn);
+                }
+            }
+        }, false);
+    }
+
+    private boolean lockCall(Connection conn, String sql, Object... values) throws SQLException {
+        try (PreparedStatement stmt = prepareStatement(conn, sql, values);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() && rs.getInt(1) == 1;
+        }
+    }
+
     private <T> T executeQuery(String query, Object[] parameters, ResultSetHandler<T> handler) {
         return executeSync(query, parameters, stmt -> {
             try (ResultSet rs = stmt.executeQuery()) {
@@ -221,10 +558,37 @@ public class Database {
 
     private PreparedStatement prepareStatement(Connection conn, String query, Object... parameters) throws SQLException {
         PreparedStatement preparedStatement = conn.prepareStatement(query);
+        bindParameters(preparedStatement, parameters);
+        return preparedStatement;
+    }
+
+    private void bindParameters(PreparedStatement preparedStatement, Object[] parameters) throws SQLException {
         for (int i = 0; i < parameters.length; i++) {
-            preparedStatement.setObject(i + 1, parameters[i]);
+            bind(preparedStatement, i + 1, parameters[i]);
+        }
+    }
+
+    // Typed binding: common parameter types go straight to their JDBC setter
+    private static void bind(PreparedStatement stmt, int index, Object value) throws SQLException {
+        if (value == null) {
+            stmt.setNull(index, Types.NULL);
+        } else if (value instanceof String str) {
+            stmt.setString(index, str);
+        } else if (value instanceof Long l) {
+            stmt.setLong(index, l);
+        } else if (value instanceof Integer i) {
+            stmt.setInt(index, i);
+        } else if (value instanceof UUID uuid) {
+            stmt.setString(index, uuid.toString());
+        } else if (value instanceof Boolean b) {
+            stmt.setBoolean(index, b);
+        } else if (value instanceof Double d) {
+            stmt.setDouble(index, d);
+        } else if (value instanceof BigInteger big) {
+            stmt.setLong(index, big.longValue());
+        } else {
+            stmt.setObject(index, value);
         }
-        return preparedStatement;
     }
 
     @FunctionalInterface
@@ -232,11 +596,51 @@ public class Database {
         T execute(PreparedStatement preparedStatement) throws SQLException;
     }
 
+    @FunctionalInterface
+    private interface ConnectionCallback<T> {
+        T execute(Connection connection) throws SQLException;
+    }
+
     @FunctionalInterface
     public interface ResultSetHandler<T> {
         T handle(ResultSet resultSet) throws SQLException;
     }
 
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(Row row) throws SQLException;
+    }
+
+    /**
+     * Read-only view of the current row of a streamed result.
+     * Only valid inside {@link RowConsumer#accept}; the cursor is advanced by the stream.
+     */
+    public static final class Row {
+        private final ResultSet rs;
+
+        private Row(ResultSet rs) {
+            this.rs = rs;
+        }
+
+        public String getString(int column) throws SQLException { return rs.getString(column); }
+        public String getString(String column) throws SQLException { return rs.getString(column); }
+        public long getLong(int column) throws SQLException { return rs.getLong(column); }
+        public long getLong(String column) throws SQLException { return rs.getLong(column); }
+        public int getInt(int column) throws SQLException { return rs.getInt(column); }
+        public int getInt(String column) throws SQLException { return rs.getInt(column); }
+        public boolean getBoolean(int column) throws SQLException { return rs.getBoolean(column); }
+        public Object getObject(int column) throws SQLException { return rs.getObject(column); }
+        public boolean wasNull() throws SQLException { return rs.wasNull(); }
+    }
+
+    /**
+     * Precompiled statement handle. The SQL is built once per table and shape;
+     * hot callers keep the handle in a field and skip string building entirely.
+     */
+    public record Query(String table, String sql) {}
+
+    private record TemplateKey(char kind, String table, String first, String second, String third) {}
+
     private String constructInsertQuery(String tableName, String columns, int valueCount) {
         StringBuilder query = new StringBuilder();
         query.append("INSERT INTO ").append(appendPrefix(tableName)).append(" (").append(columns).append(") VALUES (");
@@ -254,55 +658,401 @@ public class Database {
         return "SELECT " + columns + " FROM " + appendPrefix(tableName) + " WHERE " + where;
     }
 
+    public Query insertQuery(String tableName, String columns, int valueCount) {
+        return templates.computeIfAbsent(new TemplateKey('I', tableName, columns, String.valueOf(valueCount), null),
+                k -> new Query(tableName, constructInsertQuery(tableName, columns, valueCount)));
+    }
+
+    public Query updateQuery(String tableName, String set, String where) {
+        return templates.computeIfAbsent(new TemplateKey('U', tableName, set, where, null),
+                k -> new Query(tableName, constructUpdateOrDeleteQuery(tableName, set, where)));
+    }
+
+    public Query deleteQuery(String tableName, String where) {
+        return templates.computeIfAbsent(new TemplateKey('D', tableName, where, null, null),
+                k -> new Query(tableName, "DELETE FROM " + appendPrefix(tableName) + " WHERE " + where));
+    }
+
+    public Query selectQuery(String tableName, String columns, String where) {
+        return templates.computeIfAbsent(new TemplateKey('S', tableName, columns, where, null),
+                k -> new Query(tableName, constructSelectQuery(tableName, columns, where)));
+    }
+
+    /**
+     * Several selects with the same column shape in one round trip. Parameters bind in
+     * order across the parts. The result spans tables, so it bypasses the query cache.
+     */
+    public Query unionAllQuery(Query... selects) {
+        StringBuilder sql = new StringBuilder();
+        for (Query select : selects) {
+            if (!sql.isEmpty()) sql.append(" UNION ALL ");
+            sql.append(select.sql());
+        }
+        return new Query(null, sql.toString());
+    }
+
+    /**
+     * Insert-or-update in a single statement. {@code updateColumns} lists the columns
+     * overwritten when a row with the same {@code keyColumns} already exists; a leading
+     * '+' (e.g. "+play_time") adds the new value to the stored one instead. Requires a
+     * unique index over {@code keyColumns}.
+     */
+    public Query upsertQuery(String tableName, String columns, String keyColumns, String updateColumns) {
+        return templates.computeIfAbsent(new TemplateKey('M', tableName, columns, keyColumns, updateColumns),
+                k -> new Query(tableName, constructUpsertQuery(tableName, columns, keyColumns, updateColumns)));
+    }
+
+    private String constructUpsertQuery(String tableName, String columns, String keyColumns, String updateColumns) {
+        String[] cols = splitColumns(columns);
+        String[] keys = splitColumns(keyColumns);
+        String[] updates = splitColumns(updateColumns);
+        String placeholders = String.join(", ", Collections.nCopies(cols.length, "?"));
+
+        boolean replaceOnly = true;
+        Set<String> updated = new HashSet<>();
+        for (String u : updates) {
+            if (u.startsWith("+")) replaceOnly = false;
+            updated.add(u.replace("+", "").trim().toLowerCase());
+        }
+        Set<String> keySet = new HashSet<>();
+        for (String k : keys) keySet.add(k.toLowerCase());
+        for (String c : cols) {
+            if (!keySet.contains(c.toLowerCase()) && !updated.contains(c.toLowerCase())) replaceOnly = false;
+        }
+
+        // H2 native MERGE overwrites every listed column, so it only fits plain replacements
+        if (dialect == SqlDialect.H2 && replaceOnly) {
+            return "MERGE INTO " + appendPrefix(tableName) + " (" + String.join(", ", cols) + ") KEY ("
+                    + String.join(", ", keys) + ") VALUES (" + placeholders + ")";
+        }
+        // MariaDB, and H2 in MySQL mode for increments / partial updates
+        StringBuilder sql = new StringBuilder();
+        sql.append("INSERT INTO ").append(appendPrefix(tableName))
+                .append(" (").append(String.join(", ", cols)).append(") VALUES (").append(placeholders)
+                .append(") ON DUPLICATE KEY UPDATE ");
+        for (int i = 0; i < updates.length; i++) {
+            if (i > 0) sql.append(", ");
+            String u = updates[i];
+            if (u.startsWith("+")) {
+                String col = u.substring(1).trim();
+                sql.append(col).append(" = ").append(col).append(" + VALUES(").append(col).append(")");
+            } else {
+                sql.append(u).append(" = VALUES(").append(u).append(")");
+            }
+        }
+        return sql.toString();
+    }
+
+    private static String[] splitColumns(String columns) {
+        String[] parts = columns.split(",");
+        for (int i = 0; i < parts.length; i++) parts[i] = parts[i].trim();
+        return parts;
+    }
+
+    public boolean execute(Query query, Object... values) {
+        try {
+            return executeUpdateSync(query.sql(), values);
+        } finally {
+            invalidate(query.table());
+        }
+    }
+
+    public <T> T query(Query query, ResultSetHandler<T> handler, Object... values) {
+        return executeQuery(query.sql(), values, handler);
+    }
+
+    public boolean executeBatch(Query query, List<Object[]> rows) {
+        try {
+            return executeBatchSync(query.sql(), rows);
+        } finally {
+            invalidate(query.table());
+        }
+    }
+
+    /**
+     * Runs one write and returns the number of rows it matched, or -1 on failure. Not
+     * retried, so a conditional write is never applied twice.
+     */
+    public int executeUpdate(Query query, Object... values) {
+        try {
+            Integer count = withConnection(conn -> {
+                long start = System.nanoTime();
+                try (PreparedStatement stmt = prepareStatement(conn, query.sql(), values)) {
+                    return stmt.executeUpdate();
+                } finally {
+                    recordLatency(query.sql(), start);
+                }
+            }, false);
+            return count == null ? -1 : count;
+        } finally {
+            invalidate(query.table());
+        }
+    }
+
+    /**
+     * Runs a write and then a read in one transaction, so the read sees the row as this write
+     * left it while the row lock keeps other writers out. Returns null on failure. Not retried.
+     */
+    public <T> T executeAndQuery(Query update, Object[] updateValues, Query select,
+                                 ResultSetHandler<T> handler, Object... selectValues) {
+        try {
+            return withConnection(conn -> {
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try {
+                    long start = System.nanoTime();
+                    try (PreparedStatement stmt = prepareStatement(conn, update.sql(), updateValues)) {
+                        stmt.executeUpdate();
+                    } finally {
+                        recordLatency(update.sql(), start);
+                    }
+                    T result;
+                    start = System.nanoTime();
+                    try (PreparedStatement stmt = prepareStatement(conn, select.sql(), selectValues);
+                         ResultSet rs = stmt.executeQuery()) {
+                        result = handler.handle(rs);
+                    } finally {
+                        recordLatency(select.sql(), start);
+                    }
+                    conn.commit();
+                    return result;
+                } catch (SQLException e) {
+                    try { conn.rollback(); } catch (SQLException ignored) {}
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(autoCommit);
+                }
+            }, false);
+        } finally {
+            invalidate(update.table());
+        }
+    }
+
+    /**
+     * Like {@link #query} but served from the query cache while the entry is fresh.
+     * The handler result is shared between callers and must not be modified.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T queryCached(Query query, ResultSetHandler<T> handler, Object... values) {
+        if (cache == null || query.table() == null) {
+            return query(query, handler, values);
+        }
+        QueryCache.Token token = cache.token(query.table(), query.sql(), values);
+        Object cached = cache.get(token);
+        if (cached != QueryCache.MISS) {
+            return (T) cached;
+        }
+        T result = query(query, handler, values);
+        cache.put(token, result);
+        return result;
+    }
+
+    /** Cache hits complete immediately on the calling thread without touching the executor. */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> queryCachedAsync(Query query, ResultSetHandler<T> handler, Object... values) {
+        if (cache == null || query.table() == null) {
+            return queryAsync(query, handler, values);
+        }
+        QueryCache.Token token = cache.token(query.table(), query.sql(), values);
+        Object cached = cache.get(token);
+        if (cached != QueryCache.MISS) {
+            return CompletableFuture.completedFuture((T) cached);
+        }
+        return asyncRead(() -> {
+            T result = query(query, handler, values);
+            cache.put(token, result);
+            return result;
+        });
+    }
+
+    public <T> T selectCached(String tableName, String columns, String where, ResultSetHandler<T> handler, Object... values) {
+        return queryCached(selectQuery(tableName, columns, where), handler, values);
+    }
+
+    public <T> CompletableFuture<T> selectCachedAsync(String tableName, String columns, String where, ResultSetHandler<T> handler, Object... values) {
+        return queryCachedAsync(selectQuery(tableName, columns, where), handler, values);
+    }
+
+    /** Drops cached reads of the table; call after writing to it with hand-written SQL. */
+    public void invalidate(String tableName) {
+        if (tableName == null) {
+            invalidateAll();
+        } else if (cache != null) {
+            cache.invalidate(tableName);
+        }
+    }
+
+    public CompletableFuture<Boolean> executeAsync(Query query, Object... values) {
+        return async(() -> execute(query, values));
+    }
+
+    public <T> CompletableFuture<T> queryAsync(Query query, ResultSetHandler<T> handler, Object... values) {
+        return asyncRead(() -> query(query, handler, values));
+    }
+
+    public CompletableFuture<Boolean> executeBatchAsync(Query query, List<Object[]> rows) {
+        return async(() -> executeBatch(query, rows));
+    }
+
     public boolean createTable(String tableName, String columns) {
         String query = "CREATE TABLE IF NOT EXISTS " + appendPrefix(tableName) + " (" + columns + ")";
         return executeUpdateSync(query);
     }
 
     public boolean insert(String tableName, String columns, Object... values) {
-        return executeUpdateSync(constructInsertQuery(tableName, columns, values.length), castValuesToLong(values));
+        return execute(insertQuery(tableName, columns, values.length), values);
     }
 
     public boolean update(String tableName, String set, String where, Object... values) {
-        return executeUpdateSync(constructUpdateOrDeleteQuery(tableName, set, where), castValuesToLong(values));
+        return execute(updateQuery(tableName, set, where), values);
     }
 
     public boolean delete(String tableName, String where, Object... values) {
-        return executeUpdateSync("DELETE FROM " + appendPrefix(tableName) + " WHERE " + where, castValuesToLong(values));
+        return execute(deleteQuery(tableName, where), values);
+    }
+
+    public boolean upsert(String tableName, String columns, String keyColumns, String updateColumns, Object... values) {
+        return execute(upsertQuery(tableName, columns, keyColumns, updateColumns), values);
+    }
+
+    public boolean upsertBatch(String tableName, String columns, String keyColumns, String updateColumns, List<Object[]> rows) {
+        return executeBatch(upsertQuery(tableName, columns, keyColumns, updateColumns), rows);
+    }
+
+    /**
+     * Inserts every row with a single batched statement on one connection.
+     * Each array holds the values for {@code columns} in order.
+     */
+    public boolean insertBatch(String tableName, String columns, List<Object[]> rows) {
+        if (rows == null || rows.isEmpty()) return true;
+        return executeBatch(insertQuery(tableName, columns, rows.get(0).length), rows);
+    }
+
+    /**
+     * Runs the same UPDATE for every parameter set in one batch.
+     * Each array holds the SET parameters followed by the WHERE parameters.
+     */
+    public boolean updateBatch(String tableName, String set, String where, List<Object[]> rows) {
+        return executeBatch(updateQuery(tableName, set, where), rows);
+    }
+
+    public boolean executeBatch(String query, List<Object[]> rows) {
+        try {
+            return executeBatchSync(query, rows);
+        } finally {
+            invalidateAll();
+        }
     }
 
     public <T> T select(String tableName, String columns, String where, ResultSetHandler<T> handler, Object... values) {
-        return executeQuery(constructSelectQuery(tableName, columns, where), castValuesToLong(values), handler);
+        return query(selectQuery(tableName, columns, where), handler, values);
+    }
+
+    /**
+     * Streams matching rows to {@code consumer} as they arrive instead of buffering the result.
+     * Holds one pooled connection for the whole scan, so the consumer should stay cheap and
+     * must not wait on other queries. Returns the number of rows seen, or -1 on failure.
+     */
+    public long stream(String tableName, String columns, String where, RowConsumer consumer, Object... values) {
+        return stream(selectQuery(tableName, columns, where), STREAM_FETCH_SIZE, consumer, values);
+    }
+
+    /**
+     * MariaDB streams in fetchSize chunks for forward-only statements; H2 spills large results to disk.
+     * Not retried on connection loss, since rows already handed out cannot be taken back.
+     */
+    public long stream(Query query, int fetchSize, RowConsumer consumer, Object... values) {
+        Long count = withConnection(conn -> {
+            long start = System.nanoTime();
+            try (PreparedStatement stmt = conn.prepareStatement(query.sql(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(Math.max(1, fetchSize));
+                bindParameters(stmt, values);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    Row row = new Row(rs);
+                    long seen = 0;
+                    while (rs.next()) {
+                        consumer.accept(row);
+                        seen++;
+                    }
+                    return seen;
+                }
+            } finally {
+                recordLatency(query.sql(), start);
+            }
+        }, false);
+        return count == null ? -1 : count;
+    }
+
+    public CompletableFuture<Long> streamAsync(String tableName, String columns, String where, RowConsumer consumer, Object... values) {
+        return asyncRead(() -> stream(tableName, columns, where, consumer, values));
+    }
+
+    public CompletableFuture<Long> streamAsync(Query query, int fetchSize, RowConsumer consumer, Object... values) {
+        return asyncRead(() -> stream(query, fetchSize, consumer, values));
     }
 
     public void createTableAsync(String tableName, String columns) {
-        CompletableFuture.supplyAsync(() -> createTable(tableName, columns), DB_EXECUTOR);
+        async(() -> createTable(tableName, columns));
     }
 
     public void insertAsync(String tableName, String columns, Object... values) {
-        CompletableFuture.supplyAsync(() -> insert(tableName, columns, castValuesToLong(values)), DB_EXECUTOR);
+        async(() -> insert(tableName, columns, values));
     }
 
     public void updateAsync(String tableName, String set, String where, Object... values) {
-        CompletableFuture.supplyAsync(() -> update(tableName, set, where, castValuesToLong(values)), DB_EXECUTOR);
+        async(() -> update(tableName, set, where, values));
+    }
+
+    public CompletableFuture<Boolean> upsertAsync(String tableName, String columns, String keyColumns, String updateColumns, Object... values) {
+        return executeAsync(upsertQuery(tableName, columns, keyColumns, updateColumns), values);
+    }
+
+    public CompletableFuture<Boolean> upsertBatchAsync(String tableName, String columns, String keyColumns, String updateColumns, List<Object[]> rows) {
+        return executeBatchAsync(upsertQuery(tableName, columns, keyColumns, updateColumns), rows);
+    }
+
+    public CompletableFuture<Boolean> insertBatchAsync(String tableName, String columns, List<Object[]> rows) {
+        return async(() -> insertBatch(tableName, columns, rows));
+    }
+
+    public CompletableFuture<Boolean> updateBatchAsync(String tableName, String set, String where, List<Object[]> rows) {
+        return async(() -> updateBatch(tableName, set, where, rows));
+    }
+
+    public CompletableFuture<Boolean> executeBatchAsync(String query, List<Object[]> rows) {
+        return async(() -> executeBatch(query, rows));
     }
 
     public CompletableFuture<Boolean> deleteAsync(String tableName, String where, Object... values) {
-        return CompletableFuture.supplyAsync(() -> delete(tableName, where, castValuesToLong(values)), DB_EXECUTOR);
+        return async(() -> delete(tableName, where, values));
     }
 
     public <T> CompletableFuture<T> selectAsync(String tableName, String columns, String where, ResultSetHandler<T> handler, Object... values) {
-        Object[] params = castValuesToLong(values);
-        return CompletableFuture.supplyAsync(() -> executeQuery(constructSelectQuery(tableName, columns, where), params, handler), DB_EXECUTOR);
+        return queryAsync(selectQuery(tableName, columns, where), handler, values);
     }
 
     public <T> CompletableFuture<T> executeQueryAsync(String query, ResultSetHandler<T> handler, Object... parameters) {
-        Object[] params = castValuesToLong(parameters);
-        return CompletableFuture.supplyAsync(() -> executeQuery(query, params, handler), DB_EXECUTOR);
+        return asyncRead(() -> executeQuery(query, parameters, handler));
+    }
+
+    public boolean executeUpdate(String query, Object... parameters) {
+        try {
+            return executeUpdateSync(query, parameters);
+        } finally {
+            invalidateAll();
+        }
     }
 
     public CompletableFuture<Boolean> executeUpdateAsync(String query, Object... parameters) {
-        return CompletableFuture.supplyAsync(() -> executeUpdateSync(query, castValuesToLong(parameters)), DB_EXECUTOR);
+        return async(() -> executeUpdate(query, parameters));
+    }
+
+    // Raw SQL does not say which table it touches
+    private void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
     }
 
     public boolean exists(String tableName, String where, Object... values) {
@@ -311,38 +1061,61 @@ public class Database {
     }
 
     public boolean tableExists(String tableName) {
-        checkConnection();
-        try (Connection conn = dataSource.getConnection()) {
+        Boolean exists = withConnection(conn -> {
             DatabaseMetaData dbm = conn.getMetaData();
-            try (ResultSet tables = dbm.getTables(null, null, appendPrefix(tableName), null)) {
+            try (ResultSet tables = dbm.getTables(null, null, dialect.metaName(appendPrefix(tableName)), null)) {
                 return tables.next();
             }
-        } catch (SQLException e) {
-            Message.database("TABLE CHECK FAILED", e.getMessage());
+        });
+        return Boolean.TRUE.equals(exists);
+    }
+
+    /**
+     * True when the table has an index whose leading columns are exactly {@code columns}
+     * (in order). With {@code unique} set, only unique indexes over exactly those columns count.
+     */
+    public boolean hasIndex(String tableName, boolean unique, String... columns) {
+        Boolean found = withConnection(conn -> {
+            DatabaseMetaData dbm = conn.getMetaData();
+            Map<String, List<String>> indexes = new LinkedHashMap<>();
+            try (ResultSet rs = dbm.getIndexInfo(null, null, dialect.metaName(appendPrefix(tableName)), unique, false)) {
+                while (rs.next()) {
+                    String name = rs.getString("INDEX_NAME");
+                    String column = rs.getString("COLUMN_NAME");
+                    if (name == null || column == null) continue;
+                    if (unique && rs.getBoolean("NON_UNIQUE")) continue;
+                    List<String> cols = indexes.computeIfAbsent(name, n -> new ArrayList<>());
+                    int position = rs.getInt("ORDINAL_POSITION");
+                    while (cols.size() < position) cols.add(null);
+                    cols.set(position - 1, column);
+                }
+            }
+            for (List<String> cols : indexes.values()) {
+                if (cols.size() < columns.length || (unique && cols.size() != columns.length)) continue;
+                boolean match = true;
+                for (int i = 0; i < columns.length; i++) {
+                    if (!columns[i].equalsIgnoreCase(cols.get(i))) {
+                        match = false;
+                        break;
+                    }
+                }
+                if (match) return true;
+            }
             return false;
-        }
+        });
+        return Boolean.TRUE.equals(found);
     }
 
-    private String appendPrefix(String tableName) {
-        return tablePrefix + tableName;
+    public SqlDialect dialect() {
+        return dialect;
     }
 
-    private Object[] castValuesToLong(Object... values) {
-        Object[] castedValues = new Object[values.length];
-        for (int i = 0; i < values.length; i++) {
-            Object value = values[i];
-            if (value instanceof BigInteger) {
-                castedValues[i] = ((BigInteger) value).longValue();
-            } else if (value instanceof String && isNumeric((String) value)) {
-                castedValues[i] = new BigInteger((String) value).longValue();
-            } else {
-                castedValues[i] = value;
-            }
-        }
-        return castedValues;
+    /** Prefixed table name for hand-written SQL. */
+    public String table(String tableName) {
+        return appendPrefix(tableName);
     }
 
-    private boolean isNumeric(String str) {
-        return str.matches("-?\\d+(\\.\\d+)?");
+    private String appendPrefix(String tableName) {
+        return tablePrefix + tableName;
     }
 }
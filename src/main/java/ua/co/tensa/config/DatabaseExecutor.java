@@ -0,0 +1,372 @@
+package ua.co.tensa.config;
+
+import ua.co.tensa.Message;
+import ua.co.tensa.Tensa;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Executor for blocking JDBC work.
+ * The queue is bounded; when it is full the configured {@link OverflowPolicy} decides
+ * whether the caller waits, an older idempotent task (a read) is dropped, or the caller
+ * runs the task itself. Counters and latencies are exposed through {@link #stats()}.
+ * <p>
+ * With virtual threads enabled every task gets its own virtual thread instead of a pool
+ * thread. A semaphore sized to the connection pool caps how many run at once, so the
+ * rest wait in the same bounded queue rather than piling up on Hikari's connection timeout.
+ */
+public final class DatabaseExecutor {
+
+    public enum OverflowPolicy {
+        BLOCK, DROP_OLDEST, CALLER_RUNS;
+
+        public static OverflowPolicy fromString(String value) {
+            if (value == null) return BLOCK;
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                Message.warn("Unknown database.executor.overflow_policy '" + value + "', using block");
+                return BLOCK;
+            }
+        }
+    }
+
+    public record Stats(int queued, int capacity, int active, int poolSize, boolean virtualThreads,
+                        OverflowPolicy policy, long submitted, long completed, long dropped, long callerRuns,
+                        double avgWaitMs, long maxWaitMs, double avgExecMs, long maxExecMs) {}
+
+    private static final String THREAD_PREFIX = "tensa-db-";
+    private static final long SATURATION_LOG_INTERVAL_MS = 30_000;
+    // Set on pool threads only; other threads named tensa-db-* (the reconnect probe) are not workers
+    private static final ThreadLocal<Boolean> WORKER = new ThreadLocal<>();
+
+    private static volatile DatabaseExecutor instance;
+
+    // Exactly one of pool and virtualPool is set
+    private final ThreadPoolExecutor pool;
+    private final ExecutorService virtualPool;
+    // Virtual mode: tasks allowed to run at once, one per pooled connection
+    private final Semaphore permits;
+    private final int threads;
+    private final BlockingQueue<Runnable> queue;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final boolean virtualThreads;
+    private volatile boolean shutdown;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder execNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong maxExecNanos = new AtomicLong();
+    private final AtomicLong lastSaturationLog = new AtomicLong();
+
+    private DatabaseExecutor(int threads, int capacity, OverflowPolicy policy, boolean useVirtualThreads, int connections) {
+        this.capacity = capacity;
+        this.policy = policy;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.virtualPool = useVirtualThreads ? virtualThreadPerTaskExecutor() : null;
+        this.virtualThreads = virtualPool != null;
+        if (virtualThreads) {
+            this.threads = connections;
+            this.permits = new Semaphore(connections);
+            this.pool = null;
+        } else {
+            AtomicInteger counter = new AtomicInteger();
+            this.threads = threads;
+            this.permits = null;
+            this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue, workers(runnable -> {
+                        Thread thread = new Thread(runnable, THREAD_PREFIX + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }),
+                    (task, executor) -> overflow((Task<?>) task));
+        }
+    }
+
+    /** Shared instance, created from config.yml on first use. Settings apply after a proxy restart. */
+    public static DatabaseExecutor get() {
+        DatabaseExecutor current = instance;
+        if (current == null) {
+            synchronized (DatabaseExecutor.class) {
+                current = instance;
+                if (current == null) {
+                    current = fromConfig();
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static DatabaseExecutor fromConfig() {
+        int threads = 0;
+        int capacity = 10_000;
+        OverflowPolicy policy = OverflowPolicy.BLOCK;
+        boolean virtual = false;
+        SqlDialect dialect = SqlDialect.MARIADB;
+        if (Tensa.config != null) {
+            threads = Tensa.config.getExecutorThreads();
+            capacity = Tensa.config.getExecutorQueueCapacity();
+            policy = OverflowPolicy.fromString(Tensa.config.getExecutorOverflowPolicy());
+            virtual = Tensa.config.useVirtualThreads();
+            dialect = SqlDialect.fromType(Tensa.config.getDatabaseType());
+        }
+        if (threads <= 0) {
+            threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        }
+        return new DatabaseExecutor(threads, Math.max(16, capacity), policy, virtual, dialect.maxPoolSize());
+    }
+
+    public static void shutdown() {
+        DatabaseExecutor current;
+        synchronized (DatabaseExecutor.class) {
+            current = instance;
+            instance = null;
+        }
+        if (current == null) return;
+        current.shutdown = true;
+        ExecutorService pool = current.pool;
+        if (pool == null) {
+            // Let queued virtual tasks start before the executor stops accepting threads
+            current.awaitIdle(TimeUnit.SECONDS.toNanos(5));
+            pool = current.virtualPool;
+        }
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(5, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+                if (!pool.awaitTermination(5, TimeUnit.SECONDS)) {
+                    Message.database("EXECUTOR SHUTDOWN FAILED", "Database executor did not terminate");
+                }
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        current.rejectQueued();
+    }
+
+    private void awaitIdle(long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        try {
+            while ((!queue.isEmpty() || permits.availablePermits() < threads) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Virtual mode only: tasks still queued once the executor is gone would never complete
+    private void rejectQueued() {
+        Runnable queued;
+        while ((queued = queue.poll()) != null) {
+            ((Task<?>) queued).future.completeExceptionally(new RejectedExecutionException("Database executor is shut down"));
+        }
+    }
+
+    /**
+     * Schedules blocking work. Idempotent tasks (reads) may be dropped under the
+     * DROP_OLDEST policy; their future then completes with a RejectedExecutionException.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> work, boolean idempotent) {
+        Task<T> task = new Task<>(work, idempotent);
+        submitted.increment();
+        if (isWorkerThread()) {
+            // nested submit from a DB thread: waiting for queue space here could deadlock the pool
+            task.run();
+            return task.future;
+        }
+        if (pool != null) {
+            pool.execute(task);
+            return task.future;
+        }
+        if (!queue.offer(task)) {
+            overflow(task);
+        }
+        startQueued();
+        return task.future;
+    }
+
+    /**
+     * Virtual mode: starts queued tasks while permits are free. Called after every enqueue and
+     * after every finished task; since a task returns its permit before calling this, a task
+     * queued while all permits were taken is always picked up by one side or the other.
+     */
+    private void startQueued() {
+        while (!queue.isEmpty() && permits.tryAcquire()) {
+            Runnable next = queue.poll();
+            if (next == null) {
+                permits.release();
+                continue;
+            }
+            try {
+                virtualPool.execute(() -> {
+                    try {
+                        next.run();
+                    } finally {
+                        permits.release();
+                        startQueued();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                ((Task<?>) next).future.completeExceptionally(e);
+            }
+        }
+    }
+
+    public Stats stats() {
+        long done = completed.sum();
+        double avgWait = done == 0 ? 0 : waitNanos.sum() / (double) done / 1_000_000d;
+        double avgExec = done == 0 ? 0 : execNanos.sum() / (double) done / 1_000_000d;
+        int active = pool != null ? pool.getActiveCount() : threads - permits.availablePermits();
+        int poolSize = pool != null ? pool.getPoolSize() : threads;
+        return new Stats(queue.size(), capacity, active, poolSize, virtualThreads,
+                policy, submitted.sum(), done, dropped.sum(), callerRuns.sum(),
+                avgWait, TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()),
+                avgExec, TimeUnit.NANOSECONDS.toMillis(maxExecNanos.get()));
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    private void overflow(Task<?> task) {
+        if (shutdown || (pool != null && pool.isShutdown())) {
+            task.future.completeExceptionally(new RejectedExecutionException("Database executor is shut down"));
+            return;
+        }
+        logSaturation();
+        switch (policy) {
+            case BLOCK -> {
+                try {
+                    queue.put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    task.future.completeExceptionally(new RejectedExecutionException("Interrupted while waiting for the database queue", e));
+                }
+            }
+            case DROP_OLDEST -> {
+                if (!dropOldestIdempotent() || !queue.offer(task)) {
+                    runInCaller(task);
+                }
+            }
+            case CALLER_RUNS -> runInCaller(task);
+        }
+    }
+
+    // Writes are never discarded; if only writes are queued the caller runs the task instead
+    private boolean dropOldestIdempotent() {
+        Iterator<Runnable> it = queue.iterator();
+        while (it.hasNext()) {
+            Runnable queued = it.next();
+            if (queued instanceof Task<?> t && t.idempotent && queue.remove(t)) {
+                dropped.increment();
+                t.future.completeExceptionally(new RejectedExecutionException("Dropped by database queue overflow"));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void runInCaller(Task<?> task) {
+        callerRuns.increment();
+        task.run();
+    }
+
+    private void logSaturation() {
+        long now = System.currentTimeMillis();
+        long last = lastSaturationLog.get();
+        if (now - last >= SATURATION_LOG_INTERVAL_MS && lastSaturationLog.compareAndSet(last, now)) {
+            Message.database("QUEUE FULL", capacity + " tasks pending, policy " + policy.name().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static boolean isWorkerThread() {
+        return WORKER.get() != null;
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    // Threads made by the factory mark themselves, so nested submits run inline
+    private static ThreadFactory workers(ThreadFactory factory) {
+        return runnable -> factory.newThread(() -> {
+            WORKER.set(Boolean.TRUE);
+            runnable.run();
+        });
+    }
+
+    /**
+     * Executors.newThreadPerTaskExecutor over a Thread.ofVirtual() factory, looked up
+     * reflectively so the plugin still builds for and runs on Java 17.
+     */
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, THREAD_PREFIX + "vt-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, workers(factory));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Message.warn("Virtual threads are not available on this Java version, using platform threads");
+            return null;
+        }
+    }
+
+    private final class Task<T> implements Runnable {
+        private final Supplier<T> work;
+        private final boolean idempotent;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Task(Supplier<T> work, boolean idempotent) {
+            this.work = work;
+            this.idempotent = idempotent;
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) return;
+            long start = System.nanoTime();
+            long waited = start - enqueuedAt;
+            try {
+                future.complete(work.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                long took = System.nanoTime() - start;
+                completed.increment();
+                waitNanos.add(waited);
+                execNanos.add(took);
+                updateMax(maxWaitNanos, waited);
+                updateMax(maxExecNanos, took);
+            }
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package ua.co.tensa.config;
 
+import ua.co.tensa.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+
 public class DatabaseInitializer {
 
     private final Database database;
@@ -8,16 +13,152 @@ public class DatabaseInitializer {
         this.database = database;
     }
 
+    /**
+     * Brings the schema up to date. New steps are appended with the next version number;
+     * released versions must never be edited, since installs record what they already ran.
+     */
     public void initializeTables() {
-//        createPlayerTimeTable();
+        new SchemaMigrator(database)
+                .add(1, "create player_times", () -> createPlayerTimeTable())
+                .add(2, "create user_meta", () -> createUserMetaTable())
+                .add(3, "unique player_times (uuid)", () -> ensurePlayerTimeUniqueIndex())
+                .add(4, "index player_times (name), (play_time, uuid)", () ->
+                        ensureIndex("player_times", "name_idx", false, "name")
+                                && ensureIndex("player_times", "play_time_idx", false, "play_time", "uuid"))
+                .add(5, "unique user_meta (uuid, meta_key)", () -> ensureUserMetaUniqueIndex())
+                .add(6, "create player_time_journal", () -> createPlayTimeJournalTable())
+                .add(7, "create player_time_daily, player_time_weekly", () ->
+                        createPlayTimeRollupTable("player_time_daily") && createPlayTimeRollupTable("player_time_weekly"))
+                .migrate();
     }
-    public void createPlayerTimeTable() {
+
+    public boolean createPlayerTimeTable() {
         String sql = """
             id INT PRIMARY KEY AUTO_INCREMENT,
             name VARCHAR(255),
             uuid VARCHAR(255),
-            play_time BIGINT
+            play_time BIGINT,
+            UNIQUE KEY uniq_player_times_uuid (uuid)
             """;
-        database.createTableAsync("player_times", sql);
+        return database.createTable("player_times", sql);
+    }
+
+    /** Last play time journal record committed to player_times, one row per proxy journal. */
+    public boolean createPlayTimeJournalTable() {
+        return database.createTable("player_time_journal",
+                "journal_id VARCHAR(36) PRIMARY KEY, " +
+                        "applied_seq BIGINT NOT NULL"
+        );
+    }
+
+    /**
+     * Per-server play time summed into one row per player, server and bucket (epoch day, or the
+     * epoch day of the week's Monday). The second index serves period top lists.
+     */
+    public boolean createPlayTimeRollupTable(String tableName) {
+        return database.createTable(tableName,
+                "id BIGINT PRIMARY KEY AUTO_INCREMENT, " +
+                        "uuid VARCHAR(36) NOT NULL, " +
+                        "server VARCHAR(64) NOT NULL, " +
+                        "bucket BIGINT NOT NULL, " +
+                        "play_time BIGINT NOT NULL"
+        ) && ensureIndex(tableName, "uuid_uq", true, "uuid", "server", "bucket")
+                && ensureIndex(tableName, "top_idx", false, "bucket", "server", "play_time");
+    }
+
+    public boolean createUserMetaTable() {
+        return database.createTable("user_meta",
+                "id INT PRIMARY KEY AUTO_INCREMENT, " +
+                        "uuid VARCHAR(36), " +
+                        "meta_key VARCHAR(128), " +
+                        "meta_value TEXT, " +
+                        "UNIQUE KEY uniq_uuid_key (uuid, meta_key)"
+        );
+    }
+
+    /**
+     * Older installs created player_times without a unique uuid index, which upserts need.
+     * Duplicate rows are folded into the oldest one in a single transaction that locks them
+     * first. Each duplicate is deleted by the id whose time was just added to the kept row,
+     * and any unexpected row count rolls the fold back, so a retry or a second proxy
+     * migrating at the same time can never add the same time twice.
+     */
+    public boolean ensurePlayerTimeUniqueIndex() {
+        if (database.hasIndex("player_times", true, "uuid")) {
+            return true;
+        }
+        String table = database.table("player_times");
+        boolean folded = database.inTransaction(tx -> {
+            List<Duplicate> rows = tx.query("SELECT id, uuid, COALESCE(play_time, 0) FROM " + table
+                    + " WHERE uuid IN (SELECT uuid FROM " + table + " GROUP BY uuid HAVING COUNT(*) > 1)"
+                    + " ORDER BY uuid, id FOR UPDATE", rs -> {
+                List<Duplicate> list = new ArrayList<>();
+                while (rs.next()) list.add(new Duplicate(rs.getLong(1), rs.getString(2), rs.getLong(3)));
+                return list;
+            });
+            int i = 0;
+            while (i < rows.size()) {
+                Duplicate keep = rows.get(i);
+                long total = keep.playTime();
+                int end = i + 1;
+                while (end < rows.size() && rows.get(end).uuid().equals(keep.uuid())) {
+                    total += rows.get(end++).playTime();
+                }
+                if (tx.update("UPDATE " + table + " SET play_time = ? WHERE id = ?", total, keep.id()) != 1) {
+                    return false;
+                }
+                for (int j = i + 1; j < end; j++) {
+                    if (tx.update("DELETE FROM " + table + " WHERE id = ?", rows.get(j).id()) != 1) {
+                        return false;
+                    }
+                }
+                i = end;
+            }
+            return true;
+        });
+        if (!folded) {
+            Message.database("MIGRATION ERROR", "Could not fold duplicate " + table + " rows; unique uuid index not added");
+            return false;
+        }
+        return ensureIndex("player_times", "uuid_uq", true, "uuid");
+    }
+
+    private record Duplicate(long id, String uuid, long playTime) {}
+
+    /** Keeps the newest value per (uuid, meta_key) before enforcing uniqueness. */
+    public boolean ensureUserMetaUniqueIndex() {
+        if (database.hasIndex("user_meta", true, "uuid", "meta_key")) {
+            return true;
+        }
+        String table = database.table("user_meta");
+        String sql = database.dialect() == SqlDialect.H2
+                ? "DELETE FROM " + table + " WHERE id NOT IN (SELECT MAX(id) FROM " + table + " GROUP BY uuid, meta_key)"
+                : "DELETE t FROM " + table + " t JOIN " + table
+                        + " k ON t.uuid = k.uuid AND t.meta_key = k.meta_key AND t.id < k.id";
+        boolean deduplicated = database.inTransaction(tx -> {
+            tx.update(sql);
+            return true;
+        });
+        if (!deduplicated) {
+            Message.database("MIGRATION ERROR", "Could not remove duplicate " + table + " rows; unique index not added");
+            return false;
+        }
+        return ensureIndex("user_meta", "uuid_key_uq", true, "uuid", "meta_key");
+    }
+
+    /** Creates the index unless one with the same leading columns already exists. */
+    private boolean ensureIndex(String tableName, String suffix, boolean unique, String... columns) {
+        if (database.hasIndex(tableName, unique, columns)) {
+            return true;
+        }
+        String table = database.table(tableName);
+        // H2 index names are schema-wide, so they carry the table name
+        String sql = "CREATE " + (unique ? "UNIQUE " : "") + "INDEX " + table + "_" + suffix
+                + " ON " + table + " (" + String.join(", ", columns) + ")";
+        if (database.executeUpdate(sql)) {
+            Message.database("INDEX CREATED", table + " (" + String.join(", ", columns) + ")");
+            return true;
+        }
+        return false;
     }
 }
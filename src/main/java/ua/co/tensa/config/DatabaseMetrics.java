@@ -0,0 +1,160 @@
+package ua.co.tensa.config;
+
+import ua.co.tensa.Message;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Query and connection-acquire latency histograms, grouped by table and operation.
+ * Statements over the slow-query threshold are logged through {@link Message#database}.
+ */
+public final class DatabaseMetrics {
+
+    public record Label(String table, String op) {}
+
+    public record LatencyStats(String table, String op, long count,
+                               double p50Ms, double p95Ms, double p99Ms, double maxMs) {}
+
+    public record PoolStats(int active, int idle, int total, int waiting) {}
+
+    public record CacheStats(int entries, long hits, long misses) {}
+
+    private static final Pattern TABLE = Pattern.compile(
+            "(?i)\\b(?:from|into|update|table(?:\\s+if\\s+not\\s+exists)?)\\s+`?([A-Za-z0-9_.]+)");
+    private static final int MAX_LABELS = 512;
+    private static final Label OTHER = new Label("other", "sql");
+
+    private final String tablePrefix;
+    private final long slowQueryNanos;
+    private final Map<String, Label> labels = new ConcurrentHashMap<>();
+    private final Map<Label, Histogram> queries = new ConcurrentHashMap<>();
+    private volatile Histogram acquire = new Histogram();
+
+    public DatabaseMetrics(String tablePrefix, long slowQueryMs) {
+        this.tablePrefix = tablePrefix == null ? "" : tablePrefix;
+        this.slowQueryNanos = slowQueryMs <= 0 ? Long.MAX_VALUE : slowQueryMs * 1_000_000L;
+    }
+
+    public void record(String sql, long nanos) {
+        Label label = label(sql);
+        queries.computeIfAbsent(label, l -> new Histogram()).record(nanos);
+        if (nanos >= slowQueryNanos) {
+            String text = sql.length() > 200 ? sql.substring(0, 200) + "…" : sql;
+            Message.database("SLOW QUERY", label.table() + " " + label.op() + " took "
+                    + nanos / 1_000_000L + "ms: " + text.replaceAll("\\s+", " "));
+        }
+    }
+
+    public void recordAcquire(long nanos) {
+        acquire.record(nanos);
+    }
+
+    /** Per table/operation latencies, busiest first. */
+    public List<LatencyStats> queryStats() {
+        List<LatencyStats> out = new ArrayList<>(queries.size());
+        queries.forEach((label, h) -> out.add(h.stats(label.table(), label.op())));
+        out.sort(Comparator.comparingLong(LatencyStats::count).reversed());
+        return out;
+    }
+
+    public LatencyStats acquireStats() {
+        return acquire.stats("pool", "acquire");
+    }
+
+    public void reset() {
+        queries.clear();
+        acquire = new Histogram();
+    }
+
+    // SQL text is built from templates, so the label is parsed once per distinct statement
+    private Label label(String sql) {
+        Label label = labels.get(sql);
+        if (label != null) return label;
+        label = parse(sql);
+        if (labels.size() < MAX_LABELS) {
+            labels.put(sql, label);
+        }
+        return label;
+    }
+
+    private Label parse(String sql) {
+        String trimmed = sql.stripLeading();
+        int space = trimmed.indexOf(' ');
+        if (space <= 0) return OTHER;
+        String op = trimmed.substring(0, space).toLowerCase(Locale.ROOT);
+        String upper = trimmed.toUpperCase(Locale.ROOT);
+        if (op.equals("merge") || upper.contains("ON DUPLICATE KEY")) {
+            op = "upsert";
+        }
+        Matcher m = TABLE.matcher(trimmed);
+        if (!m.find()) return new Label("other", op);
+        String table = m.group(1);
+        if (!tablePrefix.isEmpty() && table.regionMatches(true, 0, tablePrefix, 0, tablePrefix.length())) {
+            table = table.substring(tablePrefix.length());
+        }
+        return new Label(table.toLowerCase(Locale.ROOT), op);
+    }
+
+    /**
+     * Lock-free log-bucket histogram. Bucket bounds grow by 20% from 10µs,
+     * so percentiles are reported within ~20% of the true value.
+     */
+    static final class Histogram {
+        private static final double MIN_MICROS = 10;
+        private static final double GROWTH = 1.2;
+        private static final double LOG_GROWTH = Math.log(GROWTH);
+        private static final int BUCKETS = 90;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 1);
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            double micros = nanos / 1_000d;
+            int index = micros <= MIN_MICROS ? 0
+                    : (int) Math.min(BUCKETS, Math.ceil(Math.log(micros / MIN_MICROS) / LOG_GROWTH));
+            counts.incrementAndGet(index);
+            long current;
+            while (nanos > (current = maxNanos.get()) && !maxNanos.compareAndSet(current, nanos)) {
+                // retry
+            }
+        }
+
+        LatencyStats stats(String table, String op) {
+            long[] snapshot = new long[BUCKETS + 1];
+            long total = 0;
+            for (int i = 0; i <= BUCKETS; i++) {
+                snapshot[i] = counts.get(i);
+                total += snapshot[i];
+            }
+            double maxMs = maxNanos.get() / 1_000_000d;
+            return new LatencyStats(table, op, total,
+                    percentile(snapshot, total, 0.50, maxMs),
+                    percentile(snapshot, total, 0.95, maxMs),
+                    percentile(snapshot, total, 0.99, maxMs),
+                    maxMs);
+        }
+
+        private static double percentile(long[] buckets, long total, double p, double maxMs) {
+            if (total == 0) return 0;
+            long target = (long) Math.ceil(p * total);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    if (i == BUCKETS) return maxMs;
+                    return Math.min(maxMs, MIN_MICROS * Math.pow(GROWTH, i) / 1_000d);
+                }
+            }
+            return maxMs;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ua.co.tensa.config;
+
+/**
+ * Completes async database futures while the circuit breaker is open.
+ */
+public class DatabaseUnavailableException extends RuntimeException {
+
+    public DatabaseUnavailableException(String message) {
+        super(message, null, false, false);
+    }
+}
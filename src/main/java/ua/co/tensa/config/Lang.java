@@ -15,11 +15,22 @@ public enum Lang {
     rcon_unknown_error("rcon_unknown_error"), rcon_empty_command("rcon_empty_command"), rcon_invalid_command_or_server("rcon_invalid_command_or_server"),
     player_time("player_time"), player_not_found("player_not_found"), player_time_other("player_time_other"), player_time_usage("player_time_usage"),
     player_time_days("player_time_days"), player_time_hours("player_time_hours"), player_time_minutes("player_time_minutes"), player_time_seconds("player_time_seconds"),
-    help("help"), player_time_top("player_time_top"), player_time_top_entry("player_time_top_entry"), send_usage("send_usage"), send_success("send_success"),
+    help("help"), player_time_top("player_time_top"), player_time_top_entry("player_time_top_entry"), player_time_top_day("player_time_top_day"), player_time_top_page("player_time_top_page"), player_time_top_usage("player_time_top_usage"), player_time_top_week("player_time_top_week"), player_time_rank("player_time_rank"), send_usage("send_usage"), send_success("send_success"),
     server_not_found("server_not_found"), chat_usage("chat_usage"),
     // User meta
     meta_usage("meta_usage"), meta_need_player("meta_need_player"), meta_set_ok("meta_set_ok"), meta_get_ok("meta_get_ok"), meta_deleted_ok("meta_deleted_ok"),
-    meta_no_meta("meta_no_meta"), meta_list_header("meta_list_header");
+    meta_no_meta("meta_no_meta"), meta_list_header("meta_list_header"), meta_stats("meta_stats"), meta_not_number("meta_not_number"),
+    // Database
+    db_disabled("db_disabled"), db_reset("db_reset"), db_usage("db_usage"), db_header("db_header"),
+    db_state_available("db_state_available"), db_state_reconnecting("db_state_reconnecting"), db_state_unavailable("db_state_unavailable"),
+    db_pool("db_pool"), db_executor("db_executor"), db_executor_virtual("db_executor_virtual"),
+    db_cache("db_cache"), db_metrics_disabled("db_metrics_disabled"),
+    db_queries_header("db_queries_header"), db_queries_none("db_queries_none"), db_query_row("db_query_row"),
+    // Data export/import
+    data_usage("data_usage"), data_exporting("data_exporting"), data_importing("data_importing"), data_exported("data_exported"),
+    data_imported("data_imported"), data_skipped("data_skipped"), data_export_failed("data_export_failed"), data_import_failed("data_import_failed"),
+    data_progress("data_progress"), data_progress_percent("data_progress_percent"),
+    data_meta_storage("data_meta_storage");
 
     private final String key;
 
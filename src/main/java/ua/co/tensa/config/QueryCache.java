@@ -0,0 +1,110 @@
+package ua.co.tensa.config;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache for SELECT results, keyed by statement text and parameters.
+ * Entries expire after a TTL, the least recently used ones are evicted past the size limit,
+ * and every write to a table bumps that table's generation so older entries stop matching.
+ * Cached values are shared between callers and must be treated as read-only.
+ */
+final class QueryCache {
+
+    static final Object MISS = new Object();
+
+    private record Key(String sql, List<Object> params) {}
+
+    private record Entry(Object value, long expiresAt, long tableGeneration, long globalGeneration) {}
+
+    /** Generations observed before the load; a write in between makes the result unstorable. */
+    record Token(Key key, String table, long tableGeneration, long globalGeneration) {}
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final AtomicLong globalGeneration = new AtomicLong();
+    private final LinkedHashMap<Key, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    QueryCache(long ttlSeconds, int maxEntries) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(1, ttlSeconds));
+        this.maxEntries = Math.max(16, maxEntries);
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > QueryCache.this.maxEntries;
+            }
+        };
+    }
+
+    Token token(String table, String sql, Object[] params) {
+        return new Token(new Key(sql, Arrays.asList(params.clone())), table,
+                generation(table).get(), globalGeneration.get());
+    }
+
+    /** Cached value for the token's key, or {@link #MISS}. */
+    Object get(Token token) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(token.key());
+        }
+        if (entry != null && entry.expiresAt() - System.nanoTime() > 0
+                && entry.tableGeneration() == token.tableGeneration()
+                && entry.globalGeneration() == token.globalGeneration()) {
+            hits.increment();
+            return entry.value();
+        }
+        misses.increment();
+        return MISS;
+    }
+
+    void put(Token token, Object value) {
+        if (value == null
+                || generation(token.table()).get() != token.tableGeneration()
+                || globalGeneration.get() != token.globalGeneration()) {
+            return;
+        }
+        Entry entry = new Entry(value, System.nanoTime() + ttlNanos, token.tableGeneration(), token.globalGeneration());
+        synchronized (entries) {
+            entries.put(token.key(), entry);
+        }
+    }
+
+    void invalidate(String table) {
+        generation(table).incrementAndGet();
+    }
+
+    void invalidateAll() {
+        globalGeneration.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    private AtomicLong generation(String table) {
+        return generations.computeIfAbsent(table, t -> new AtomicLong());
+    }
+}
@@ -0,0 +1,99 @@
+package ua.co.tensa.config;
+
+import ua.co.tensa.Message;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Minimal versioned schema migration runner.
+ * Applied versions are recorded in the schema_version table; on start every
+ * registered migration above the stored version runs once, in order.
+ * The whole run holds a database lock, so when two proxies start at the same time the
+ * second waits and then finds the versions the first one recorded.
+ */
+public class SchemaMigrator {
+
+    private static final String VERSION_TABLE = "schema_version";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    @FunctionalInterface
+    public interface Step {
+        boolean apply();
+    }
+
+    public record Migration(int version, String description, Step step) {}
+
+    private final Database database;
+    private final List<Migration> migrations = new ArrayList<>();
+
+    public SchemaMigrator(Database database) {
+        this.database = database;
+    }
+
+    public SchemaMigrator add(int version, String description, Step step) {
+        migrations.add(new Migration(version, description, step));
+        return this;
+    }
+
+    /** Highest applied version, 0 on a fresh install, or -1 if it could not be read. */
+    public int currentVersion() {
+        Integer version = database.select(VERSION_TABLE, "MAX(version)", "1 = 1",
+                rs -> rs.next() ? rs.getInt(1) : 0);
+        return version == null ? -1 : version;
+    }
+
+    /**
+     * Applies pending migrations. Stops at the first failing step, or when a version cannot
+     * be recorded, so later steps never run against a half-migrated schema.
+     */
+    public boolean migrate() {
+        if (!database.createTable(VERSION_TABLE,
+                "version INT PRIMARY KEY, description VARCHAR(255), applied_at BIGINT")) {
+            Message.database("MIGRATION FAILED", "Unable to create " + database.table(VERSION_TABLE));
+            return false;
+        }
+        Boolean done = database.withLock(database.table(VERSION_TABLE), LOCK_TIMEOUT_SECONDS, this::migrateLocked);
+        if (done == null) {
+            Message.database("MIGRATION FAILED", "Could not lock " + database.table(VERSION_TABLE));
+            return false;
+        }
+        return done;
+    }
+
+    private boolean migrateLocked() {
+        int current = currentVersion();
+        if (current < 0) {
+            Message.database("MIGRATION FAILED", "Unable to read " + database.table(VERSION_TABLE));
+            return false;
+        }
+        migrations.sort(Comparator.comparingInt(Migration::version));
+        int applied = 0;
+        for (Migration migration : migrations) {
+            if (migration.version() <= current) continue;
+            boolean ok;
+            try {
+                ok = migration.step().apply();
+            } catch (RuntimeException e) {
+                Message.database("MIGRATION ERROR", "v" + migration.version() + " → " + e.getMessage());
+                ok = false;
+            }
+            if (!ok) {
+                Message.database("MIGRATION FAILED", "v" + migration.version() + " " + migration.description());
+                return false;
+            }
+            if (!database.insert(VERSION_TABLE, "version, description, applied_at",
+                    migration.version(), migration.description(), System.currentTimeMillis())) {
+                Message.database("MIGRATION FAILED", "v" + migration.version() + " applied but not recorded");
+                return false;
+            }
+            Message.database("MIGRATED", "v" + migration.version() + " " + migration.description());
+            applied++;
+        }
+        if (applied == 0) {
+            Message.database("SCHEMA", "Up to date (v" + current + ")");
+        }
+        return true;
+    }
+}
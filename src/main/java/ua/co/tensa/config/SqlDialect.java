@@ -0,0 +1,23 @@
+package ua.co.tensa.config;
+
+/**
+ * SQL flavour of the connected database. H2 runs in MySQL mode,
+ * but upserts and metadata lookups still differ between the two.
+ */
+public enum SqlDialect {
+    MARIADB, H2;
+
+    public static SqlDialect fromType(String type) {
+        return "h2".equalsIgnoreCase(type) ? H2 : MARIADB;
+    }
+
+    /** Hikari pool size; the embedded H2 file serves one process and needs fewer connections. */
+    public int maxPoolSize() {
+        return this == H2 ? 5 : 10;
+    }
+
+    /** Identifier case used by DatabaseMetaData lookups (H2 stores unquoted names upper-case). */
+    public String metaName(String identifier) {
+        return this == H2 ? identifier.toUpperCase(java.util.Locale.ROOT) : identifier;
+    }
+}
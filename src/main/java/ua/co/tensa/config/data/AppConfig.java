@@ -55,6 +55,48 @@ public class AppConfig extends ConfigBase {
     @CfgKey("database.table_prefix")
     public String tablePrefix = "tensa_";
 
+    @CfgKey(value = "database.server_prepared_statements", comment = "Use server-side prepared statements (MySQL/MariaDB)")
+    public boolean serverPreparedStatements = true;
+
+    @CfgKey(value = "database.prepared_statement_cache_size", comment = "Prepared statements cached per connection")
+    public int preparedStatementCacheSize = 250;
+
+    @CfgKey(value = "database.executor.threads", comment = "Worker threads for async queries (0 = auto). Restart required")
+    public int executorThreads = 0;
+
+    @CfgKey(value = "database.executor.queue_capacity", comment = "Max queued async queries before the overflow policy applies")
+    public int executorQueueCapacity = 10000;
+
+    @CfgKey(value = "database.executor.overflow_policy", comment = "block | drop_oldest (drops queued reads only) | caller_runs")
+    public String executorOverflowPolicy = "block";
+
+    @CfgKey(value = "database.executor.virtual_threads", comment = "Run each query on its own virtual thread (Java 21+), at most one per pooled connection; threads is then ignored")
+    public boolean executorVirtualThreads = false;
+
+    @CfgKey(value = "database.breaker.failure_threshold", comment = "Consecutive connection failures before queries fail fast")
+    public int breakerFailureThreshold = 3;
+
+    @CfgKey(value = "database.breaker.initial_backoff_ms", comment = "First reconnect attempt delay, doubled after each failure")
+    public long breakerInitialBackoffMs = 1000;
+
+    @CfgKey(value = "database.breaker.max_backoff_ms", comment = "Upper bound for the reconnect delay")
+    public long breakerMaxBackoffMs = 60000;
+
+    @CfgKey(value = "database.cache.enable", comment = "Cache hot reads (placeholders, lookups); writes invalidate per table")
+    public boolean queryCacheEnable = true;
+
+    @CfgKey(value = "database.cache.ttl_seconds", comment = "How long a cached read stays valid")
+    public int queryCacheTtlSeconds = 30;
+
+    @CfgKey(value = "database.cache.max_entries", comment = "Least recently used results are evicted past this size")
+    public int queryCacheMaxEntries = 5000;
+
+    @CfgKey(value = "database.metrics.enable", comment = "Collect query latency histograms (/tensa db stats)")
+    public boolean databaseMetricsEnable = true;
+
+    @CfgKey(value = "database.metrics.slow_query_ms", comment = "Log queries slower than this (0 = off)")
+    public long slowQueryMs = 250;
+
     public AppConfig() {
         super("config.yml");
         // After base reload, field initializers are applied; seed module defaults if missing
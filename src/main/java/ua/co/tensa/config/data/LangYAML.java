@@ -102,6 +102,11 @@ public class LangYAML extends YamlBackedFile {
         setConfigValue("player_time_seconds", " seconds ");
         setConfigValue("player_time_top", "<green>Top players by time:</green>");
         setConfigValue("player_time_top_entry", "<green>{position}.</green> <gold>{player}</gold> <gray>-</gray> <white>{time}</white>");
+        setConfigValue("player_time_top_day", "<green>Top players today:</green>");
+        setConfigValue("player_time_top_week", "<green>Top players this week:</green>");
+        setConfigValue("player_time_top_page", "<gray>Page {page} of {pages}</gray>");
+        setConfigValue("player_time_top_usage", "<red>Usage: /tptop [page] | /tptop day|week [server]</red>");
+        setConfigValue("player_time_rank", "<green>Rank:</green> <white>#{rank}</white>");
 
         // Send Module
         yamlFile.setComment("send_usage", "Send Module");
@@ -113,6 +118,48 @@ public class LangYAML extends YamlBackedFile {
         yamlFile.setComment("chat_usage", "Chat Module");
         setConfigValue("chat_usage", "<gold>Usage:</gold> <yellow>/{command}</yellow> <gray>(player) (message)</gray>");
 
+        // User Meta
+        yamlFile.setComment("meta_stats", "User Meta");
+        setConfigValue("meta_stats", "<gold>Meta cache:</gold> <gray>online</gray> <white>{online}</white> <gray>offline</gray> <white>{offline}</white>"
+                + " <gray>hits</gray> <white>{hits}</white> <gray>misses</gray> <white>{misses}</white> <gray>({rate})</gray>"
+                + " <gray>evicted</gray> <white>{evictions}</white>");
+        setConfigValue("meta_not_number", "<red>Meta </red><yellow>{key}</yellow><red> is not a number</red>");
+
+        // Database
+        yamlFile.setComment("db_disabled", "Database");
+        setConfigValue("db_disabled", "<red>Database is disabled</red>");
+        setConfigValue("db_reset", "<green>Database metrics reset</green>");
+        setConfigValue("db_usage", "<gold>Usage:</gold> <yellow>/tensa db</yellow> <gray>[stats/reset]</gray>");
+        setConfigValue("db_header", "<gold>Database</gold> <gray>({dialect})</gray> {state}");
+        setConfigValue("db_state_available", "<green>available</green>");
+        setConfigValue("db_state_reconnecting", "<yellow>reconnecting</yellow>");
+        setConfigValue("db_state_unavailable", "<red>unavailable</red>");
+        setConfigValue("db_pool", "<yellow>Pool</yellow> <gray>active</gray> <white>{active}</white> <gray>idle</gray> <white>{idle}</white>"
+                + " <gray>total</gray> <white>{total}</white> <gray>waiting</gray> {waiting}");
+        setConfigValue("db_executor", "<yellow>Executor</yellow> <gray>queued</gray> <white>{queued}/{capacity}</white>"
+                + " <gray>active</gray> <white>{active}/{threads}</white> <gray>dropped</gray> {dropped}"
+                + " <gray>caller-runs</gray> {caller_runs} <gray>wait avg/max</gray> <white>{wait_avg}/{wait_max}ms</white>");
+        setConfigValue("db_executor_virtual", " <gray>(virtual)</gray>");
+        setConfigValue("db_cache", "<yellow>Cache</yellow> <gray>entries</gray> <white>{entries}</white> <gray>hit rate</gray> <white>{rate}</white>");
+        setConfigValue("db_metrics_disabled", "<gray>Query metrics are disabled (database.metrics.enable)</gray>");
+        setConfigValue("db_queries_header", "<gold>Queries</gold> <gray>(p50/p95/p99/max ms)</gray>:");
+        setConfigValue("db_queries_none", "<gray>none yet</gray>");
+        setConfigValue("db_query_row", "<yellow>{table}</yellow> <white>{op}</white> <gray>x{count}</gray> <white>{p50}/{p95}/{p99}/{max}</white>");
+
+        // Data export/import
+        yamlFile.setComment("data_usage", "Data export/import");
+        setConfigValue("data_usage", "<gold>Usage:</gold> <yellow>/tensa data</yellow> <gray>export [player_times/user_meta/all] | import [file] [add]</gray>");
+        setConfigValue("data_exporting", "<gray>Exporting</gray> <white>{table}</white><gray>...</gray>");
+        setConfigValue("data_importing", "<gray>Importing</gray> <white>{file}</white><gray>...</gray>");
+        setConfigValue("data_exported", "<green>Exported</green> <white>{rows}</white> <gray>rows of</gray> <yellow>{table}</yellow> <gray>to</gray> <white>{file}</white>");
+        setConfigValue("data_imported", "<green>Imported</green> <white>{rows}</white> <gray>rows of</gray> <yellow>{table}</yellow> <gray>from</gray> <white>{file}</white>");
+        setConfigValue("data_skipped", "<red>{skipped} invalid rows skipped</red>");
+        setConfigValue("data_export_failed", "<red>Export failed:</red> <gray>{error}</gray>");
+        setConfigValue("data_import_failed", "<red>Import failed:</red> <gray>{error}</gray>");
+        setConfigValue("data_progress", "<yellow>{table}</yellow> <white>{rows}</white> <gray>rows</gray>");
+        setConfigValue("data_progress_percent", "<yellow>{table}</yellow> <white>{rows}</white> <gray>rows ({percent}%)</gray>");
+        setConfigValue("data_meta_storage", "<red>User meta uses</red> <yellow>{storage}</yellow> <red>storage; importing into the database table would not change live meta</red>");
+
         // Help
         yamlFile.setComment("help", "Help");
         setConfigValue("help",
@@ -120,10 +167,12 @@ public class LangYAML extends YamlBackedFile {
                         + "\n<gold>/tensa</gold> <gray>-</gray> <green>Show help.</green>"
                         + "\n<gold>/tensareload</gold> <gray>-</gray> <green>Reload all configurations.</green>"
                         + "\n<gold>/tensamodules</gold> <gray>-</gray> <green>Show all modules.</green>"
+                        + "\n<gold>/tensa db [stats/reset]</gold> <gray>-</gray> <green>Database pool, queue and query latency stats.</green>"
+                        + "\n<gold>/tensa data [export/import]</gold> <gray>-</gray> <green>Export or import player_times and user_meta as CSV.</green>"
                         + "\n<gold>/tpl</gold> <gray>-</gray> <green>Show all plugins.</green>"
                         + "\n<gold>/tptime</gold> <gray>-</gray> <green>Returns your total playing time.</green>"
                         + "\n<gold>/tptime [player]</gold> <gray>-</gray> <green>Returns the specified player's total playing time.</green>"
-                        + "\n<gold>/tptop</gold> <gray>-</gray> <green>Shows the top players by time.</green>"
+                        + "\n<gold>/tptop [page|day|week] [server]</gold> <gray>-</gray> <green>Shows the top players by time.</green>"
                         + "\n<gold>/rcon [server/all/reload] [command]</gold> <gray>-</gray> <green>Sends the specified command to the specified server or all servers.</green>"
                         + "\n<gold>/php [script/reload] [args]</gold> <gray>-</gray> <green>Executes the specified PHP script.</green>"
                         + "\n<gold>/bash [script/reload] [args]</gold> <gray>-</gray> <green>Executes the specified Bash script.</green>"
@@ -37,6 +37,7 @@ public class Modules {
             if (Tensa.database.connect()) {
                 initializer = new ua.co.tensa.config.DatabaseInitializer(Tensa.database);
                 initializer.initializeTables();
+                ua.co.tensa.players.PlayerNameIndex.load(Tensa.database);
             }
         }
         applyConfig();
@@ -71,6 +72,20 @@ public class Modules {
         reloadAll();
     }
 
+    /**
+     * Disables every enabled module, last registered first, so each one can save
+     * what it holds in memory. Called on proxy shutdown before the database closes.
+     */
+    public static void shutdown() {
+        java.util.List<ModuleEntry> entries = new java.util.ArrayList<>(REGISTRY.values());
+        java.util.Collections.reverse(entries);
+        for (ModuleEntry m : entries) {
+            if (m.isEnabled()) {
+                try { m.disable(); } catch (Throwable t) { ua.co.tensa.Message.warn("Module shutdown failed: " + m.id() + " - " + t.getMessage()); }
+            }
+        }
+    }
+
     // Snapshot view for info commands or admin tools
     public static java.util.Map<String, ModuleEntry> getEntries() {
         return java.util.Collections.unmodifiableMap(REGISTRY);
@@ -0,0 +1,176 @@
+package ua.co.tensa.modules.meta;
+
+import org.simpleyaml.configuration.ConfigurationSection;
+import org.simpleyaml.configuration.file.YamlFile;
+import ua.co.tensa.Message;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/**
+ * All players' meta in one YAML file ({@code storage.file}), held in memory. Writes only
+ * mark the player dirty; {@link #flush()} serializes a snapshot to a temp file and renames
+ * it over the original, so a crash mid-save never leaves a truncated file. The file is
+ * re-read only when its modification time or size no longer match what TENSA last wrote,
+ * i.e. after an edit by hand; players with unsaved changes keep their in-memory values.
+ */
+final class FileMetaStorage implements MetaStorage {
+
+    private final Path path;
+    private final Object saveLock = new Object();
+    private Map<UUID, Map<String, String>> data = new HashMap<>();
+    private final Set<UUID> dirty = new HashSet<>();
+    private FileTime knownModified;
+    private long knownSize = -1;
+
+    FileMetaStorage(Path path) {
+        this.path = path;
+        try {
+            Path parent = path.getParent();
+            if (parent != null) Files.createDirectories(parent);
+            if (!Files.exists(path)) Files.writeString(path, "", StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Message.error("UserMeta file storage error: " + e.getMessage());
+        }
+        reloadIfChanged();
+    }
+
+    @Override
+    public synchronized Map<String, String> load(UUID uuid) {
+        Map<String, String> meta = data.get(uuid);
+        return meta == null ? Map.of() : Map.copyOf(meta);
+    }
+
+    @Override
+    public synchronized void set(UUID uuid, String key, String value) {
+        data.computeIfAbsent(uuid, id -> new HashMap<>()).put(key, value);
+        dirty.add(uuid);
+    }
+
+    @Override
+    public synchronized void delete(UUID uuid, String key) {
+        Map<String, String> meta = data.get(uuid);
+        if (meta == null || meta.remove(key) == null) return;
+        if (meta.isEmpty()) data.remove(uuid);
+        dirty.add(uuid);
+    }
+
+    @Override
+    public synchronized String compute(UUID uuid, String key, UnaryOperator<String> update) {
+        Map<String, String> meta = data.computeIfAbsent(uuid, id -> new HashMap<>());
+        String current = meta.get(key);
+        String next = update.apply(current);
+        if (!Objects.equals(current, next)) {
+            if (next == null) meta.remove(key);
+            else meta.put(key, next);
+            dirty.add(uuid);
+        }
+        if (meta.isEmpty()) data.remove(uuid);
+        return next;
+    }
+
+    @Override
+    public boolean reloadIfChanged() {
+        // saveLock keeps our own rename from looking like an outside edit
+        synchronized (saveLock) {
+            FileTime modified;
+            long size;
+            try {
+                if (!Files.exists(path)) return false;
+                modified = Files.getLastModifiedTime(path);
+                size = Files.size(path);
+            } catch (IOException e) {
+                return false;
+            }
+            synchronized (this) {
+                if (modified.equals(knownModified) && size == knownSize) return false;
+            }
+            Map<UUID, Map<String, String>> read = readAll(path);
+            synchronized (this) {
+                knownModified = modified;
+                knownSize = size;
+                // Reported once per edit; the next save writes the loaded data back
+                if (read == null) return false;
+                for (UUID uuid : dirty) {
+                    Map<String, String> mine = data.get(uuid);
+                    if (mine == null) read.remove(uuid);
+                    else read.put(uuid, mine);
+                }
+                data = read;
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public void flush() {
+        reloadIfChanged();
+        synchronized (saveLock) {
+            Set<UUID> saving;
+            Map<UUID, Map<String, String>> snapshot = new HashMap<>();
+            synchronized (this) {
+                if (dirty.isEmpty()) return;
+                saving = new HashSet<>(dirty);
+                dirty.clear();
+                data.forEach((uuid, meta) -> snapshot.put(uuid, Map.copyOf(meta)));
+            }
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try {
+                YamlFile file = new YamlFile(temp.toFile());
+                snapshot.forEach((uuid, meta) -> meta.forEach((key, value) -> file.set(uuid + "." + key, value)));
+                file.save();
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                FileTime modified = Files.getLastModifiedTime(path);
+                long size = Files.size(path);
+                synchronized (this) {
+                    knownModified = modified;
+                    knownSize = size;
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    dirty.addAll(saving);
+                }
+                Message.error("UserMeta file save failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Every player in a single-file store, or null if it cannot be parsed. */
+    static Map<UUID, Map<String, String>> readAll(Path path) {
+        YamlFile file = new YamlFile(path.toFile());
+        try {
+            file.load();
+        } catch (Exception e) {
+            Message.error("UserMeta file could not be read, keeping the data already loaded: " + e.getMessage());
+            return null;
+        }
+        Map<UUID, Map<String, String>> read = new HashMap<>();
+        for (String id : file.getKeys(false)) {
+            ConfigurationSection section = file.getConfigurationSection(id);
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(id);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (section == null) continue;
+            Map<String, String> meta = new HashMap<>();
+            for (String key : section.getKeys(false)) {
+                meta.put(key, section.getString(key, ""));
+            }
+            if (!meta.isEmpty()) read.put(uuid, meta);
+        }
+        return read;
+    }
+}
@@ -0,0 +1,217 @@
+package ua.co.tensa.modules.meta;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Persistent meta held in memory. Online players are pinned from join to quit so
+ * placeholders never miss; everyone else looked up (offline targets of /tmeta) sits in an
+ * LRU bounded by size and idle time. Evicted players are reported to {@code onEvict} so the
+ * storage backend can let go of them too.
+ */
+final class MetaCache {
+
+    record Stats(int online, int offline, long hits, long misses, long evictions) {}
+
+    // Mutable so a hit only updates the time; guarded by the offline map's lock
+    private static final class Idle {
+        final Map<String, String> meta;
+        long touchedAt;
+
+        Idle(Map<String, String> meta, long touchedAt) {
+            this.meta = meta;
+            this.touchedAt = touchedAt;
+        }
+    }
+
+    private final Map<UUID, Map<String, String>> online = new ConcurrentHashMap<>();
+    private final LinkedHashMap<UUID, Idle> offline;
+    private final long idleNanos;
+    private final Consumer<UUID> onEvict;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    MetaCache(int offlineCapacity, long idleSeconds, Consumer<UUID> onEvict) {
+        int capacity = Math.max(16, offlineCapacity);
+        this.idleNanos = TimeUnit.SECONDS.toNanos(Math.max(1, idleSeconds));
+        this.onEvict = onEvict;
+        this.offline = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Idle> eldest) {
+                if (size() <= capacity) return false;
+                evicted(eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Cached meta, loading it on a miss; online players are pinned, others go to the LRU.
+     * The loader returns a fresh mutable map, which the cache keeps. The returned map is
+     * live and must not be modified by the caller.
+     */
+    Map<String, String> get(UUID uuid, Function<UUID, Map<String, String>> loader, Predicate<UUID> isOnline) {
+        Map<String, String> meta = lookup(uuid);
+        if (meta != null) {
+            hits.increment();
+            return meta;
+        }
+        misses.increment();
+        Map<String, String> loaded = loader.apply(uuid);
+        if (isOnline.test(uuid)) {
+            Map<String, String> raced = online.putIfAbsent(uuid, loaded);
+            return raced != null ? raced : loaded;
+        }
+        synchronized (offline) {
+            Idle raced = offline.get(uuid);
+            if (raced != null) return raced.meta;
+            offline.put(uuid, new Idle(loaded, System.nanoTime()));
+        }
+        return loaded;
+    }
+
+    /** Cached meta without loading or counting, or null. */
+    Map<String, String> peek(UUID uuid) {
+        Map<String, String> meta = online.get(uuid);
+        if (meta != null) return meta;
+        synchronized (offline) {
+            Idle idle = offline.get(uuid);
+            if (idle == null) return null;
+            // get() moved it to the back of the access order; keep idle times in that order
+            idle.touchedAt = System.nanoTime();
+            return idle.meta;
+        }
+    }
+
+    /**
+     * Meta to write into: the cached map, or for an online player not yet loaded an empty
+     * pinned one that the pending preload merges into. Null for uncached offline players,
+     * whose next read comes from storage.
+     */
+    Map<String, String> writable(UUID uuid, boolean isOnline) {
+        Map<String, String> meta = peek(uuid);
+        if (meta != null || !isOnline) return meta;
+        return online.computeIfAbsent(uuid, id -> new ConcurrentHashMap<>());
+    }
+
+    /** Merges stored rows under what is cached, which was written after the rows were read. */
+    void merge(UUID uuid, Map<String, String> rows, boolean isOnline) {
+        Idle previous;
+        synchronized (offline) {
+            previous = offline.remove(uuid);
+        }
+        Map<String, String> merged = online.compute(uuid, (id, existing) -> {
+            Map<String, String> map = new ConcurrentHashMap<>();
+            if (rows != null) map.putAll(rows);
+            if (previous != null) map.putAll(previous.meta);
+            if (existing != null) map.putAll(existing);
+            return map;
+        });
+        // The player left while the read was in flight
+        if (!isOnline) release(uuid, merged);
+    }
+
+    /** Moves a player who left from the pinned set into the LRU. */
+    void release(UUID uuid) {
+        Map<String, String> meta = online.remove(uuid);
+        if (meta != null) release(uuid, meta);
+    }
+
+    private void release(UUID uuid, Map<String, String> meta) {
+        online.remove(uuid, meta);
+        synchronized (offline) {
+            offline.put(uuid, new Idle(meta, System.nanoTime()));
+        }
+    }
+
+    /** Drops offline entries idle for longer than the configured time; returns how many. */
+    int expire() {
+        long now = System.nanoTime();
+        int removed = 0;
+        synchronized (offline) {
+            // Access order puts the least recently used first, so stop at the first live one
+            Iterator<Map.Entry<UUID, Idle>> it = offline.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<UUID, Idle> e = it.next();
+                if (now - e.getValue().touchedAt < idleNanos) break;
+                it.remove();
+                evicted(e.getKey());
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Drops every offline entry and returns the pinned players, whose maps stay in place
+     * until {@link #replace} swaps in fresh rows.
+     */
+    List<UUID> invalidate() {
+        synchronized (offline) {
+            Iterator<UUID> it = offline.keySet().iterator();
+            while (it.hasNext()) {
+                UUID uuid = it.next();
+                it.remove();
+                evicted(uuid);
+            }
+        }
+        return List.copyOf(online.keySet());
+    }
+
+    /** Replaces a pinned player's meta with rows read after the stored data changed. */
+    void replace(UUID uuid, Map<String, String> rows) {
+        online.computeIfPresent(uuid, (id, existing) -> {
+            Map<String, String> map = new ConcurrentHashMap<>();
+            if (rows != null) map.putAll(rows);
+            return map;
+        });
+    }
+
+    void clear() {
+        online.clear();
+        synchronized (offline) {
+            offline.clear();
+        }
+    }
+
+    Stats stats() {
+        int offlineSize;
+        synchronized (offline) {
+            offlineSize = offline.size();
+        }
+        return new Stats(online.size(), offlineSize, hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private Map<String, String> lookup(UUID uuid) {
+        Map<String, String> meta = online.get(uuid);
+        if (meta != null) return meta;
+        synchronized (offline) {
+            Idle idle = offline.get(uuid);
+            if (idle == null) return null;
+            long now = System.nanoTime();
+            if (now - idle.touchedAt >= idleNanos) {
+                offline.remove(uuid);
+                evicted(uuid);
+                return null;
+            }
+            idle.touchedAt = now;
+            return idle.meta;
+        }
+    }
+
+    private void evicted(UUID uuid) {
+        evictions.increment();
+        if (onEvict != null && !online.containsKey(uuid)) onEvict.accept(uuid);
+    }
+}
@@ -0,0 +1,41 @@
+package ua.co.tensa.modules.meta;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable point-in-time view of a player's meta. The two layers are kept as they are
+ * instead of being merged; session values shadow persistent ones with the same key.
+ */
+public record MetaSnapshot(Map<String, String> persistent, Map<String, String> session) {
+
+    public static final MetaSnapshot EMPTY = new MetaSnapshot(Map.of(), Map.of());
+
+    public MetaSnapshot {
+        persistent = Map.copyOf(persistent);
+        session = Map.copyOf(session);
+    }
+
+    /** Value for {@code key}, or null if neither layer has it. */
+    public String get(String key) {
+        String value = session.get(key);
+        return value != null ? value : persistent.get(key);
+    }
+
+    public boolean isEmpty() {
+        return persistent.isEmpty() && session.isEmpty();
+    }
+
+    /** Visible entries in key order. */
+    public void forEach(BiConsumer<String, String> action) {
+        toMap().forEach(action);
+    }
+
+    /** Visible entries merged into one sorted map. */
+    public Map<String, String> toMap() {
+        Map<String, String> merged = new TreeMap<>(persistent);
+        merged.putAll(session);
+        return merged;
+    }
+}
@@ -0,0 +1,38 @@
+package ua.co.tensa.modules.meta;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/**
+ * Persistent backend behind {@link UserMetaStore} for the non-database storage types.
+ * Implementations keep their data in memory and write it out in the background, so
+ * none of these calls touch the disk on the caller's thread.
+ */
+interface MetaStorage {
+
+    /** Stored meta of one player; an empty map when there is none. */
+    Map<String, String> load(UUID uuid);
+
+    void set(UUID uuid, String key, String value);
+
+    void delete(UUID uuid, String key);
+
+    /**
+     * Replaces the value with {@code update.apply(current)} atomically for this player; a
+     * null result removes the key. Returns the value now stored.
+     */
+    String compute(UUID uuid, String key, UnaryOperator<String> update);
+
+    /**
+     * Picks up edits made to the files outside TENSA. Returns true if anything was
+     * re-read, so callers can drop copies they cached.
+     */
+    boolean reloadIfChanged();
+
+    /** Writes out pending changes; called on an interval and at shutdown. */
+    void flush();
+
+    /** The player is no longer cached; backends may let go of them once their changes are written. */
+    default void evict(UUID uuid) {}
+}
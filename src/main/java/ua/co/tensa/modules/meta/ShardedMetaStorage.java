@@ -0,0 +1,296 @@
+package ua.co.tensa.modules.meta;
+
+import org.simpleyaml.configuration.file.YamlFile;
+import ua.co.tensa.Message;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * One small YAML file per player under {@code storage.directory}, spread over 256
+ * subdirectories by the first two hex digits of the UUID. A player's file is read the
+ * first time they are looked up, and a save rewrites only the files of players that
+ * changed, so neither startup nor a single write depends on how many players exist.
+ * Files are replaced through a temp file and rename, and re-read when their modification
+ * time or size changes outside TENSA.
+ *
+ * <p>Players dropped from the meta cache are released here too, after any unsaved changes
+ * are written. Writes to players the cache does not hold (offline targets of /tmeta) open
+ * their file released, so it is dropped again once written. On first use, an existing
+ * single-file store ({@code storage.file}) is split into the directory and renamed to
+ * {@code *.migrated}.
+ */
+final class ShardedMetaStorage implements MetaStorage {
+
+    private static final class Shard {
+        Map<String, String> meta;
+        boolean dirty;
+        boolean released;   // not held by the meta cache; dropped once written
+        FileTime modified;
+        long size = -1;
+
+        Shard(Map<String, String> meta) {
+            this.meta = meta;
+        }
+    }
+
+    private final Path directory;
+    private final Object saveLock = new Object();
+    private final Map<UUID, Shard> loaded = new ConcurrentHashMap<>();
+    // Shards removed from loaded so far; a file read across a removal may predate its last write
+    private final AtomicLong drops = new AtomicLong();
+
+    ShardedMetaStorage(Path directory, Path legacyFile) {
+        this.directory = directory;
+        try {
+            boolean fresh = !Files.isDirectory(directory);
+            Files.createDirectories(directory);
+            if (fresh && legacyFile != null && Files.isRegularFile(legacyFile)) {
+                migrate(legacyFile);
+            }
+        } catch (IOException e) {
+            Message.error("UserMeta sharded storage error: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, String> load(UUID uuid) {
+        // Only the meta cache loads, and it reports the player through evict() when it lets go
+        return withShard(uuid, true, shard -> Map.copyOf(shard.meta));
+    }
+
+    @Override
+    public void set(UUID uuid, String key, String value) {
+        withShard(uuid, false, shard -> {
+            shard.meta.put(key, value);
+            shard.dirty = true;
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(UUID uuid, String key) {
+        withShard(uuid, false, shard -> {
+            if (shard.meta.remove(key) != null) shard.dirty = true;
+            return null;
+        });
+    }
+
+    @Override
+    public String compute(UUID uuid, String key, UnaryOperator<String> update) {
+        return withShard(uuid, false, shard -> {
+            String current = shard.meta.get(key);
+            String next = update.apply(current);
+            if (!Objects.equals(current, next)) {
+                if (next == null) shard.meta.remove(key);
+                else shard.meta.put(key, next);
+                shard.dirty = true;
+            }
+            return next;
+        });
+    }
+
+    @Override
+    public void evict(UUID uuid) {
+        loaded.computeIfPresent(uuid, (id, shard) -> {
+            synchronized (shard) {
+                if (!shard.dirty) {
+                    drops.incrementAndGet();
+                    return null;
+                }
+                shard.released = true;
+                return shard;
+            }
+        });
+    }
+
+    /** Checks the files of loaded players only; players with unsaved changes are skipped. */
+    @Override
+    public boolean reloadIfChanged() {
+        boolean changed = false;
+        synchronized (saveLock) {
+            for (Map.Entry<UUID, Shard> e : loaded.entrySet()) {
+                Shard shard = e.getValue();
+                Path file = file(e.getKey());
+                FileTime modified;
+                long size;
+                try {
+                    modified = Files.getLastModifiedTime(file);
+                    size = Files.size(file);
+                } catch (IOException ex) {
+                    modified = null;
+                    size = -1;
+                }
+                synchronized (shard) {
+                    if (shard.dirty || (size == shard.size && Objects.equals(modified, shard.modified))) continue;
+                }
+                Map<String, String> meta = read(file);
+                if (meta == null) continue;
+                synchronized (shard) {
+                    if (shard.dirty) continue;
+                    shard.meta = meta;
+                    shard.modified = modified;
+                    shard.size = size;
+                }
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public void flush() {
+        synchronized (saveLock) {
+            int failed = 0;
+            String error = null;
+            for (Map.Entry<UUID, Shard> e : loaded.entrySet()) {
+                Shard shard = e.getValue();
+                Map<String, String> snapshot;
+                synchronized (shard) {
+                    if (!shard.dirty) continue;
+                    shard.dirty = false;
+                    snapshot = Map.copyOf(shard.meta);
+                }
+                Path file = file(e.getKey());
+                try {
+                    write(file, snapshot);
+                    FileTime modified = snapshot.isEmpty() ? null : Files.getLastModifiedTime(file);
+                    long size = snapshot.isEmpty() ? -1 : Files.size(file);
+                    synchronized (shard) {
+                        shard.modified = modified;
+                        shard.size = size;
+                    }
+                    loaded.computeIfPresent(e.getKey(), (id, current) -> {
+                        synchronized (current) {
+                            if (!current.released || current.dirty) return current;
+                            drops.incrementAndGet();
+                            return null;
+                        }
+                    });
+                } catch (IOException ex) {
+                    synchronized (shard) {
+                        shard.dirty = true;
+                    }
+                    failed++;
+                    error = ex.getMessage();
+                }
+            }
+            if (failed > 0) {
+                Message.error("UserMeta save failed for " + failed + " players: " + error);
+            }
+        }
+    }
+
+    /**
+     * Runs under the map's per-key lock, so an access and a drop after flush cannot interleave.
+     * A missing shard is read from its file before that lock is taken, since compute would hold
+     * other keys of the same bin for the whole read; the read is retried if any shard was
+     * dropped meanwhile. {@code pin} marks the shard as held by the meta cache; other accesses
+     * leave the flag as it is, and a shard they open stays released and is dropped as soon as
+     * it is clean.
+     */
+    private <T> T withShard(UUID uuid, boolean pin, Function<Shard, T> action) {
+        Object[] result = new Object[1];
+        boolean[] stale = new boolean[1];
+        do {
+            long seen = drops.get();
+            Shard opened = loaded.containsKey(uuid) ? null : open(uuid);
+            stale[0] = false;
+            loaded.compute(uuid, (id, shard) -> {
+                Shard current = shard;
+                if (current == null) {
+                    if (opened == null || drops.get() != seen) {
+                        stale[0] = true;
+                        return null;
+                    }
+                    current = opened;
+                    current.released = !pin;
+                }
+                synchronized (current) {
+                    if (pin) current.released = false;
+                    result[0] = action.apply(current);
+                    if (!current.released || current.dirty) return current;
+                    drops.incrementAndGet();
+                    return null;
+                }
+            });
+        } while (stale[0]);
+        @SuppressWarnings("unchecked")
+        T value = (T) result[0];
+        return value;
+    }
+
+    private Shard open(UUID uuid) {
+        Path file = file(uuid);
+        Map<String, String> meta = read(file);
+        Shard shard = new Shard(meta == null ? new HashMap<>() : meta);
+        try {
+            shard.modified = Files.getLastModifiedTime(file);
+            shard.size = Files.size(file);
+        } catch (IOException ignored) {
+            // no file yet
+        }
+        return shard;
+    }
+
+    private Path file(UUID uuid) {
+        String id = uuid.toString();
+        return directory.resolve(id.substring(0, 2)).resolve(id + ".yml");
+    }
+
+    // Missing file is an empty map; null means the file exists but cannot be parsed
+    private static Map<String, String> read(Path file) {
+        if (!Files.isRegularFile(file)) return new HashMap<>();
+        YamlFile yaml = new YamlFile(file.toFile());
+        try {
+            yaml.load();
+        } catch (Exception e) {
+            Message.error("UserMeta file " + file.getFileName() + " could not be read: " + e.getMessage());
+            return null;
+        }
+        Map<String, String> meta = new HashMap<>();
+        for (String key : yaml.getKeys(false)) {
+            meta.put(key, yaml.getString(key, ""));
+        }
+        return meta;
+    }
+
+    // Players without meta have no file
+    private static void write(Path file, Map<String, String> meta) throws IOException {
+        if (meta.isEmpty()) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        YamlFile yaml = new YamlFile(temp.toFile());
+        meta.forEach(yaml::set);
+        yaml.save();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void migrate(Path legacyFile) throws IOException {
+        Map<UUID, Map<String, String>> all = FileMetaStorage.readAll(legacyFile);
+        if (all == null) {
+            Message.warn("UserMeta " + legacyFile.getFileName() + " was not migrated to sharded storage");
+            return;
+        }
+        for (Map.Entry<UUID, Map<String, String>> e : all.entrySet()) {
+            write(file(e.getKey()), e.getValue());
+        }
+        Files.move(legacyFile, legacyFile.resolveSibling(legacyFile.getFileName() + ".migrated"),
+                StandardCopyOption.REPLACE_EXISTING);
+        Message.info("UserMeta migrated " + all.size() + " players from " + legacyFile.getFileName() + " to sharded storage");
+    }
+}
@@ -4,8 +4,8 @@ import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.command.SimpleCommand;
 import com.velocitypowered.api.proxy.Player;
 import ua.co.tensa.Message;
-import ua.co.tensa.Tensa;
 import ua.co.tensa.config.Lang;
+import ua.co.tensa.players.PlayerNameIndex;
 
 import java.util.Arrays;
 import java.util.List;
@@ -34,15 +34,23 @@ public class UserMetaCommand implements SimpleCommand {
         }
 
         String sub = args[0].toLowerCase();
+        if (sub.equals("stats") && sender.hasPermission("tensa.meta.admin")) {
+            MetaCache.Stats stats = store.stats();
+            long lookups = stats.hits() + stats.misses();
+            String rate = lookups == 0 ? "-" : String.format(java.util.Locale.ROOT, "%.1f%%", stats.hits() * 100d / lookups);
+            Message.sendLang(sender, Lang.meta_stats, "{online}", String.valueOf(stats.online()),
+                    "{offline}", String.valueOf(stats.offline()), "{hits}", String.valueOf(stats.hits()),
+                    "{misses}", String.valueOf(stats.misses()), "{rate}", rate,
+                    "{evictions}", String.valueOf(stats.evictions()));
+            return;
+        }
         int index = 1;
         UUID target;
-        if (args.length >= 3 && !args[1].contains(":") && Tensa.server.getPlayer(args[1]).isPresent()) {
-            // Admin form with player name
-            if (!sender.hasPermission("tensa.meta.admin")) {
-                Message.sendLang(sender, Lang.no_perms);
-                return;
-            }
-            target = Tensa.server.getPlayer(args[1]).get().getUniqueId();
+        // Admin form with a player name, online or not; others always act on themselves
+        PlayerNameIndex.Entry named = args.length >= 3 && !args[1].contains(":") && sender.hasPermission("tensa.meta.admin")
+                ? PlayerNameIndex.find(args[1]) : null;
+        if (named != null) {
+            target = named.uuid();
             index = 2;
         } else {
             if (!(sender instanceof Player)) {
@@ -87,13 +95,34 @@ public class UserMetaCommand implements SimpleCommand {
                 Message.sendLang(sender, Lang.meta_deleted_ok, "{key}", key);
                 break;
             }
+            case "add": {
+                if (args.length <= index + 1) {
+                    Message.sendLang(sender, Lang.meta_usage);
+                    return;
+                }
+                String key = args[index];
+                long amount;
+                try {
+                    amount = Long.parseLong(args[index + 1]);
+                } catch (NumberFormatException e) {
+                    Message.sendLang(sender, Lang.meta_not_number, "{key}", key);
+                    return;
+                }
+                Long value = store.increment(target, key, amount);
+                if (value == null) {
+                    Message.sendLang(sender, Lang.meta_not_number, "{key}", key);
+                    return;
+                }
+                Message.sendLang(sender, Lang.meta_set_ok, "{key}", key, "{value}", String.valueOf(value));
+                break;
+            }
             case "list": {
-                var map = store.getAll(target);
-                if (map.isEmpty()) {
+                MetaSnapshot snapshot = store.snapshot(target);
+                if (snapshot.isEmpty()) {
                     Message.sendLang(sender, Lang.meta_no_meta);
                 } else {
                     Message.sendLang(sender, Lang.meta_list_header);
-                    map.forEach((k, v) -> Message.send(sender, " - <green>" + k + ":</green> <gray>" + v + "</gray>"));
+                    snapshot.forEach((k, v) -> Message.send(sender, " - <green>" + k + ":</green> <gray>" + v + "</gray>"));
                 }
                 break;
             }
@@ -105,22 +134,23 @@ public class UserMetaCommand implements SimpleCommand {
     @Override
     public CompletableFuture<List<String>> suggestAsync(Invocation invocation) {
         String[] a = invocation.arguments();
-        if (a.length == 0) return CompletableFuture.completedFuture(List.of("set", "get", "del", "list"));
+        List<String> subs = invocation.source().hasPermission("tensa.meta.admin")
+                ? List.of("set", "get", "del", "add", "list", "stats") : List.of("set", "get", "del", "add", "list");
+        if (a.length == 0) return CompletableFuture.completedFuture(subs);
         String sub = a[0].toLowerCase();
-        if (a.length == 1) return CompletableFuture.completedFuture(List.of("set", "get", "del", "list"));
+        if (a.length == 1) return CompletableFuture.completedFuture(subs);
         // arg1 may be player or key depending on subcommand
         if (a.length == 2) {
-            // suggest online players as potential target
-            var list = new java.util.ArrayList<String>();
-            for (Player p : Tensa.server.getAllPlayers()) list.add(p.getUsername());
-            return CompletableFuture.completedFuture(list);
+            // suggest known players as potential target
+            if (!invocation.source().hasPermission("tensa.meta.admin")) return CompletableFuture.completedFuture(List.of());
+            return CompletableFuture.completedFuture(PlayerNameIndex.complete(a[1], 50));
         }
         // a.length >= 3: try to detect if arg1 is player
-        java.util.Optional<Player> opt = Tensa.server.getPlayer(a[1]);
-        UUID target = opt.map(Player::getUniqueId).orElseGet(() -> (invocation.source() instanceof Player pl ? pl.getUniqueId() : null));
+        PlayerNameIndex.Entry named = invocation.source().hasPermission("tensa.meta.admin") ? PlayerNameIndex.find(a[1]) : null;
+        UUID target = named != null ? named.uuid() : (invocation.source() instanceof Player pl ? pl.getUniqueId() : null);
         java.util.ArrayList<String> out = new java.util.ArrayList<>();
         if (target != null) {
-            var keys = UserMetaModule.getStore().getAll(target).keySet();
+            var keys = UserMetaModule.getStore().snapshot(target).toMap().keySet();
             out.addAll(keys);
         }
         if (sub.equals("set") || sub.equals("del")) {
@@ -1,6 +1,8 @@
 package ua.co.tensa.modules.meta;
 
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.connection.PostLoginEvent;
 import ua.co.tensa.Tensa;
 import ua.co.tensa.Util;
@@ -10,6 +12,8 @@ import ua.co.tensa.modules.ModuleEntry;
 import ua.co.tensa.modules.meta.data.UserMetaConfig;
 import ua.co.tensa.placeholders.PlaceholderManager;
 
+import java.util.concurrent.TimeUnit;
+
 public class UserMetaModule {
     private static final ModuleEntry IMPL = new AbstractModule(
             "user-meta", "User Meta") {
@@ -43,6 +47,12 @@ public class UserMetaModule {
         // Track listener via AbstractModule helper, so it is auto-unregistered
         ((AbstractModule) IMPL).registerListener(new UserMetaModule());
         AbstractModule.registerCommand("tmeta", "usermeta", new UserMetaCommand(store));
+        if (store.getStorageType() == UserMetaStore.StorageType.FILE
+                || store.getStorageType() == UserMetaStore.StorageType.SHARDED) {
+            long interval = Math.max(1, UserMetaConfig.get().saveIntervalSeconds);
+            ((AbstractModule) IMPL).scheduleRepeating(store::flush, interval, interval, TimeUnit.SECONDS);
+        }
+        ((AbstractModule) IMPL).scheduleRepeating(store::expire, 1, 1, TimeUnit.MINUTES);
         // register meta placeholders with PlaceholderManager
         PlaceholderManager.registerRawPrefixResolver("meta_", (player, key) -> {
             if (player == null || store == null) return "";
@@ -68,6 +78,7 @@ public class UserMetaModule {
         PlaceholderManager.unregisterRawPrefixResolver("tensa_meta_");
         PlaceholderManager.unregisterAnglePrefixResolver("meta_");
         PlaceholderManager.unregisterAnglePrefixResolver("tensa_meta_");
+        if (store != null) store.flush();
         store = null;
     }
 
@@ -79,9 +90,16 @@ public class UserMetaModule {
     }
 
     @Subscribe
-    public void onJoin(PostLoginEvent event) {
-        if (store != null) {
-            store.preload(event.getPlayer().getUniqueId());
-        }
+    public EventTask onJoin(PostLoginEvent event) {
+        UserMetaStore current = store;
+        if (current == null) return null;
+        // Sharded storage reads one small file here; database reads are handed to the DB executor
+        return EventTask.async(() -> current.preloadAsync(event.getPlayer().getUniqueId()));
+    }
+
+    @Subscribe
+    public void onQuit(DisconnectEvent event) {
+        UserMetaStore current = store;
+        if (current != null) current.release(event.getPlayer().getUniqueId());
     }
 }
@@ -1,54 +1,86 @@
 package ua.co.tensa.modules.meta;
 
-import org.simpleyaml.configuration.file.YamlFile;
 import ua.co.tensa.Tensa;
 import ua.co.tensa.config.Database;
+import ua.co.tensa.config.SqlDialect;
 import ua.co.tensa.modules.meta.data.UserMetaConfig;
+import ua.co.tensa.players.PlayerPrefetch;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 public class UserMetaStore {
-    public enum StorageType { DATABASE, FILE, MEMORY }
+    public enum StorageType { DATABASE, FILE, SHARDED, MEMORY }
 
     private final StorageType storageType;
     private final Database db;
-    private final YamlFile file;
+    private final MetaStorage storage;
     private final boolean defaultPersist;
 
-    // session-only meta
+    // session-only meta, dropped on quit (memory storage keeps it until restart)
     private final Map<UUID, Map<String, String>> sessionCache = new ConcurrentHashMap<>();
-    // persistent cache (memory copy to speed up lookups)
-    private final Map<UUID, Map<String, String>> cache = new ConcurrentHashMap<>();
+    // persistent meta: online players pinned, offline lookups bounded
+    private final MetaCache cache;
+    // held as fields so cache hits on the placeholder path allocate nothing
+    private final Function<UUID, Map<String, String>> loader = this::loadAll;
+    private static final Predicate<UUID> ONLINE = UserMetaStore::isOnline;
+    /*
+     * One counter rule for every backend: a stored value is a number only if it matches
+     * NUMERIC (optional minus, 1 to 18 digits, nothing else), and an increment whose result
+     * would leave that range is refused and leaves the value unchanged. Two such values never
+     * overflow a BIGINT when added, so SQL and Java agree on every input.
+     */
+    private static final String NUMERIC = "^-?[0-9]{1,18}$";
+    private static final Pattern NUMBER = Pattern.compile(NUMERIC);
+    private static final long LIMIT = 999_999_999_999_999_999L;
+    private final Database.Query incrementQuery;
+    private final Database.Query insertIfAbsentQuery;
 
     public UserMetaStore(Database db) {
         String type = UserMetaConfig.get().storageType;
         this.storageType = switch (type.toLowerCase()) {
             case "file" -> StorageType.FILE;
+            case "sharded" -> StorageType.SHARDED;
             case "memory" -> StorageType.MEMORY;
             default -> StorageType.DATABASE;
         };
         this.defaultPersist = UserMetaConfig.get().defaultPersist;
         this.db = db;
-        String filePath;
-        if (this.storageType == StorageType.FILE) {
-            String path = UserMetaConfig.get().storageFile;
-            filePath = Tensa.pluginPath.resolve(path).toString();
-            this.file = new YamlFile(filePath);
-            try {
-                java.nio.file.Path parent = java.nio.file.Paths.get(filePath).getParent();
-                if (parent != null) java.nio.file.Files.createDirectories(parent);
-                if (!file.exists()) file.createNewFile(true);
-                file.load();
-                file.save();
-            } catch (Exception e) {
-            ua.co.tensa.Message.error("UserMeta file storage error: " + e.getMessage());
-            }
+        this.storage = switch (storageType) {
+            case FILE -> new FileMetaStorage(Tensa.pluginPath.resolve(UserMetaConfig.get().storageFile));
+            case SHARDED -> new ShardedMetaStorage(Tensa.pluginPath.resolve(UserMetaConfig.get().storageDirectory),
+                    Tensa.pluginPath.resolve(UserMetaConfig.get().storageFile));
+            default -> null;
+        };
+        if (storageType == StorageType.DATABASE && db != null) {
+            String table = db.table("user_meta");
+            String integer = db.dialect() == SqlDialect.H2 ? "BIGINT" : "SIGNED";
+            String text = db.dialect() == SqlDialect.H2 ? "VARCHAR" : "CHAR";
+            // The stored value is only added to while it is a number and the sum stays in range;
+            // otherwise it is left alone. The casts sit in THEN branches, so text is never cast
+            String sum = "CAST(meta_value AS " + integer + ") + CAST(VALUES(meta_value) AS " + integer + ")";
+            this.incrementQuery = new Database.Query("user_meta", "INSERT INTO " + table
+                    + " (uuid, meta_key, meta_value) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE meta_value = CASE WHEN meta_value REGEXP '"
+                    + NUMERIC + "' THEN CASE WHEN " + sum + " BETWEEN " + -LIMIT + " AND " + LIMIT
+                    + " THEN CAST(" + sum + " AS " + text + ") ELSE meta_value END ELSE meta_value END");
+            // A row another proxy inserted first is skipped (0 rows) instead of failing on the unique key
+            this.insertIfAbsentQuery = new Database.Query("user_meta", "INSERT IGNORE INTO " + table
+                    + " (uuid, meta_key, meta_value) VALUES (?, ?, ?)");
         } else {
-            this.file = null;
-            filePath = null;
+            this.incrementQuery = null;
+            this.insertIfAbsentQuery = null;
         }
+        MetaStorage backend = this.storage;
+        this.cache = new MetaCache(UserMetaConfig.get().cacheMaxOffline, UserMetaConfig.get().cacheIdleSeconds,
+                backend == null ? null : backend::evict);
     }
 
     public void ensureTable() {
@@ -65,37 +97,29 @@ public class UserMetaStore {
 
     public boolean getDefaultPersist() { return defaultPersist; }
 
+    public StorageType getStorageType() { return storageType; }
+
+    /** All visible meta merged into a new map; prefer {@link #snapshot} or {@link #get}. */
     public Map<String, String> getAll(UUID uuid) {
-        Map<String, String> persistent = cache.computeIfAbsent(uuid, this::loadAll);
-        Map<String, String> session = sessionCache.computeIfAbsent(uuid, u -> new ConcurrentHashMap<>());
-        Map<String, String> merged = new ConcurrentHashMap<>(persistent);
-        merged.putAll(session);
-        return merged;
+        return snapshot(uuid).toMap();
+    }
+
+    /** Immutable copy of both layers, for listing. */
+    public MetaSnapshot snapshot(UUID uuid) {
+        Map<String, String> session = sessionCache.get(uuid);
+        return new MetaSnapshot(cache.get(uuid, loader, ONLINE), session == null ? Map.of() : session);
     }
 
     private Map<String, String> loadAll(UUID uuid) {
         Map<String, String> map = new ConcurrentHashMap<>();
         switch (storageType) {
-            case DATABASE -> db.select("user_meta", "meta_key, meta_value", "uuid = ?",
-                    rs -> {
-                        while (rs.next()) {
-                            map.put(rs.getString(1), rs.getString(2));
-                        }
-                        return null;
-                    }, uuid.toString());
-            case FILE -> {
-                if (file != null) {
-                    try { file.load(); } catch (Exception ignored) {}
-                }
-                if (file != null && file.contains(uuid.toString())) {
-                    var section = file.getConfigurationSection(uuid.toString());
-                    if (section != null) {
-                        for (String key : section.getKeys(false)) {
-                            map.put(key, section.getString(key, ""));
-                        }
-                    }
-                }
+            case DATABASE -> {
+                // cached result is shared, so copy it into this player's own map
+                Map<String, String> rows = db.selectCached("user_meta", "meta_key, meta_value", "uuid = ?",
+                        UserMetaStore::readRows, uuid.toString());
+                if (rows != null) map.putAll(rows);
             }
+            case FILE, SHARDED -> map.putAll(storage.load(uuid));
             case MEMORY -> {
                 // nothing to load; memory-only
             }
@@ -103,9 +127,12 @@ public class UserMetaStore {
         return map;
     }
 
+    /** Session value, else persistent value, else "". Reads the cached maps in place. */
     public String get(UUID uuid, String key) {
-        Map<String, String> merged = getAll(uuid);
-        return merged.getOrDefault(key, "");
+        Map<String, String> session = sessionCache.get(uuid);
+        String value = session == null ? null : session.get(key);
+        if (value == null) value = cache.get(uuid, loader, ONLINE).get(key);
+        return value == null ? "" : value;
     }
 
     public void set(UUID uuid, String key, String value, boolean sessionOnly) {
@@ -114,23 +141,12 @@ public class UserMetaStore {
             return;
         }
         switch (storageType) {
-            case DATABASE -> {
-                boolean exists = db.exists("user_meta", "uuid = ? AND meta_key = ?", uuid.toString(), key);
-                if (exists) {
-                    db.update("user_meta", "meta_value = ?", "uuid = ? AND meta_key = ?", value, uuid.toString(), key);
-                } else {
-                    db.insert("user_meta", "uuid, meta_key, meta_value", uuid.toString(), key, value);
-                }
-            }
-            case FILE -> {
-                if (file != null) {
-                    try { file.load(); } catch (Exception ignored) {}
-                    file.set(uuid.toString() + "." + key, value);
-                    try { file.save(); } catch (Exception e) { ua.co.tensa.Message.error(e.getMessage()); }
-                }
-            }
+            case DATABASE -> db.upsert("user_meta", "uuid, meta_key, meta_value", "uuid, meta_key", "meta_value",
+                    uuid.toString(), key, value);
+            case FILE, SHARDED -> storage.set(uuid, key, value);
         }
-        cache.computeIfAbsent(uuid, u -> new ConcurrentHashMap<>()).put(key, value);
+        Map<String, String> cached = cache.writable(uuid, isOnline(uuid));
+        if (cached != null) cached.put(key, value);
     }
 
     public void delete(UUID uuid, String key, boolean sessionOnly) {
@@ -141,23 +157,220 @@ public class UserMetaStore {
         }
         switch (storageType) {
             case DATABASE -> db.delete("user_meta", "uuid = ? AND meta_key = ?", uuid.toString(), key);
-            case FILE -> {
-                if (file != null) {
-                    try { file.load(); } catch (Exception ignored) {}
-                    file.set(uuid.toString() + "." + key, null);
-                    try { file.save(); } catch (Exception e) { ua.co.tensa.Message.error(e.getMessage()); }
-                }
-            }
+            case FILE, SHARDED -> storage.delete(uuid, key);
             case MEMORY -> {}
         }
-        var persistent = cache.get(uuid);
+        var persistent = cache.peek(uuid);
         if (persistent != null) persistent.remove(key);
         var session = sessionCache.get(uuid);
         if (session != null) session.remove(key);
     }
 
+    /** Value of {@code key} as a number, or {@code def} if it is unset or not numeric. */
+    public long getLong(UUID uuid, String key, long def) {
+        Long value = parseLong(get(uuid, key));
+        return value == null ? def : value;
+    }
+
+    /**
+     * Adds {@code delta} to a numeric persistent value, treating an unset key as 0. Runs as
+     * one statement in database storage, so concurrent changes from several proxies all
+     * count. Returns the new value, or null if the stored value is not a number, the result
+     * would need more than 18 digits, or the write failed.
+     */
+    public Long increment(UUID uuid, String key, long delta) {
+        // Also what an unset key becomes, so it has to be a valid counter itself
+        if (delta < -LIMIT || delta > LIMIT) return null;
+        String next;
+        switch (storageType) {
+            case DATABASE -> {
+                next = db.executeAndQuery(incrementQuery, new Object[]{uuid.toString(), key, Long.toString(delta)},
+                        db.selectQuery("user_meta", "meta_value", "uuid = ? AND meta_key = ?"),
+                        rs -> rs.next() ? rs.getString(1) : null, uuid.toString(), key);
+                // A value the statement left alone (not a counter) comes back unchanged
+                if (parseLong(next) == null) return null;
+                Map<String, String> cached = cache.writable(uuid, isOnline(uuid));
+                if (cached != null) cached.put(key, next);
+            }
+            case FILE, SHARDED -> {
+                Map<String, String> cached = cache.writable(uuid, isOnline(uuid));
+                String[] result = new String[1];
+                storage.compute(uuid, key, current -> {
+                    String added = add(current, delta);
+                    if (added == null) return current;
+                    result[0] = added;
+                    // Under the storage lock, so concurrent increments reach the cache in order
+                    if (cached != null) cached.put(key, added);
+                    return added;
+                });
+                next = result[0];
+            }
+            default -> {
+                String[] result = new String[1];
+                sessionCache.computeIfAbsent(uuid, u -> new ConcurrentHashMap<>()).compute(key, (k, current) -> {
+                    String added = add(current, delta);
+                    result[0] = added;
+                    return added == null ? current : added;
+                });
+                next = result[0];
+            }
+        }
+        return parseLong(next);
+    }
+
+    public Long decrement(UUID uuid, String key, long delta) {
+        return increment(uuid, key, -delta);
+    }
+
+    /**
+     * Sets {@code key} to {@code value} only if it currently equals {@code expected}
+     * (null: only if unset). One conditional statement in database storage.
+     */
+    public boolean compareAndSet(UUID uuid, String key, String expected, String value) {
+        boolean swapped;
+        switch (storageType) {
+            case DATABASE -> {
+                if (Objects.equals(expected, value)) {
+                    // Nothing to write; some drivers report 0 changed rows for a no-op update
+                    String stored = db.select("user_meta", "meta_value", "uuid = ? AND meta_key = ?",
+                            rs -> rs.next() ? rs.getString(1) : null, uuid.toString(), key);
+                    return Objects.equals(stored, expected);
+                }
+                int changed = expected == null
+                        ? db.executeUpdate(insertIfAbsentQuery, uuid.toString(), key, value)
+                        : db.executeUpdate(db.updateQuery("user_meta", "meta_value = ?", "uuid = ? AND meta_key = ? AND meta_value = ?"),
+                                value, uuid.toString(), key, expected);
+                swapped = changed == 1;
+                if (swapped) {
+                    Map<String, String> cached = cache.writable(uuid, isOnline(uuid));
+                    if (cached != null) cached.put(key, value);
+                }
+            }
+            case FILE, SHARDED -> {
+                Map<String, String> cached = cache.writable(uuid, isOnline(uuid));
+                boolean[] result = new boolean[1];
+                storage.compute(uuid, key, current -> {
+                    if (!Objects.equals(current, expected)) return current;
+                    result[0] = true;
+                    if (cached != null) cached.put(key, value);
+                    return value;
+                });
+                swapped = result[0];
+            }
+            default -> {
+                boolean[] result = new boolean[1];
+                sessionCache.computeIfAbsent(uuid, u -> new ConcurrentHashMap<>()).compute(key, (k, current) -> {
+                    if (!Objects.equals(current, expected)) return current;
+                    result[0] = true;
+                    return value;
+                });
+                swapped = result[0];
+            }
+        }
+        return swapped;
+    }
+
+    // current + delta as text; unset counts as 0, null if not a number or out of range
+    private static String add(String current, long delta) {
+        long base = 0;
+        if (current != null) {
+            Long parsed = parseLong(current);
+            if (parsed == null) return null;
+            base = parsed;
+        }
+        // Both are within LIMIT, so the sum cannot overflow
+        long sum = base + delta;
+        return sum < -LIMIT || sum > LIMIT ? null : Long.toString(sum);
+    }
+
+    // The NUMERIC rule shared with the SQL statement
+    private static Long parseLong(String value) {
+        return value != null && NUMBER.matcher(value).matches() ? Long.parseLong(value) : null;
+    }
+
+    /**
+     * Background save for file storage: picks up outside edits to the files (dropping cached
+     * copies if there were any), then writes pending changes.
+     */
+    public void flush() {
+        if (storage == null) return;
+        if (storage.reloadIfChanged()) cache.clear();
+        storage.flush();
+    }
+
+    /**
+     * Re-reads cached meta after user_meta was changed outside this store, e.g. by a CSV
+     * import. Offline entries are dropped; online players' maps are replaced as their rows
+     * arrive. Only database storage reads that table, so other types have nothing to do.
+     */
+    public CompletableFuture<Void> reloadCached() {
+        if (storageType != StorageType.DATABASE) return CompletableFuture.completedFuture(null);
+        List<CompletableFuture<Void>> reads = new ArrayList<>();
+        for (UUID uuid : cache.invalidate()) {
+            reads.add(readAsync(uuid).thenAccept(rows -> cache.replace(uuid, rows)));
+        }
+        return CompletableFuture.allOf(reads.toArray(new CompletableFuture[0]))
+                .exceptionally(ex -> {
+                    ua.co.tensa.Message.error("UserMeta reload failed: " + ex.getMessage());
+                    return null;
+                });
+    }
+
+    /** Unpins a player who left and drops their session meta. */
+    public void release(UUID uuid) {
+        if (storageType != StorageType.MEMORY) sessionCache.remove(uuid);
+        cache.release(uuid);
+    }
+
+    /** Drops offline entries past their idle time; run periodically. */
+    public void expire() {
+        cache.expire();
+    }
+
+    MetaCache.Stats stats() {
+        return cache.stats();
+    }
+
     public void preload(UUID uuid) {
-        cache.put(uuid, loadAll(uuid));
-        sessionCache.computeIfAbsent(uuid, u -> new ConcurrentHashMap<>());
+        cache.merge(uuid, loadAll(uuid), isOnline(uuid));
+    }
+
+    /**
+     * Preload that never waits on the database: rows come from the login prefetch when one
+     * ran, otherwise the select runs on the DB executor; either way they are merged in when
+     * they arrive. File and memory storage load inline.
+     */
+    public CompletableFuture<Void> preloadAsync(UUID uuid) {
+        if (storageType != StorageType.DATABASE) {
+            preload(uuid);
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<PlayerPrefetch.Prefetched> prefetch = PlayerPrefetch.lookup(uuid);
+        CompletableFuture<Map<String, String>> read = prefetch == null ? readAsync(uuid)
+                : prefetch.handle((p, ex) -> p).thenCompose(p -> p == null ? readAsync(uuid)
+                        : CompletableFuture.completedFuture(p.meta()));
+        // values set while the read was in flight are newer than the rows
+        return read.thenAccept(rows -> cache.merge(uuid, rows, isOnline(uuid)))
+                .exceptionally(ex -> {
+                    ua.co.tensa.Message.error("UserMeta preload failed for " + uuid + ": " + ex.getMessage());
+                    return null;
+                });
+    }
+
+    private static boolean isOnline(UUID uuid) {
+        return Tensa.server != null && Tensa.server.getPlayer(uuid).isPresent();
+    }
+
+    private CompletableFuture<Map<String, String>> readAsync(UUID uuid) {
+        return db.selectCachedAsync("user_meta", "meta_key, meta_value", "uuid = ?",
+                UserMetaStore::readRows, uuid.toString());
+    }
+
+    private static Map<String, String> readRows(java.sql.ResultSet rs) throws java.sql.SQLException {
+        Map<String, String> loaded = new java.util.HashMap<>();
+        while (rs.next()) {
+            loaded.put(rs.getString(1), rs.getString(2));
+        }
+        return java.util.Collections.unmodifiableMap(loaded);
     }
 }
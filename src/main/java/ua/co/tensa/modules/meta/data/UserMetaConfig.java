@@ -10,11 +10,26 @@ public class UserMetaConfig extends ConfigBase {
     private static UserMetaConfig instance;
 
     @CfgKey("storage.type")
-    public String storageType = "database"; // database | file | memory
+    public String storageType = "database"; // database | file | sharded | memory
 
     @CfgKey("storage.file")
     public String storageFile = "user_meta/data.yml";
 
+    // sharded storage: one file per player under this directory
+    @CfgKey("storage.directory")
+    public String storageDirectory = "user_meta/players";
+
+    // How often file storage writes pending changes; also saved on disable and shutdown
+    @CfgKey("storage.save_interval_seconds")
+    public int saveIntervalSeconds = 10;
+
+    // Offline players looked up by command stay cached until evicted by count or idle time
+    @CfgKey("cache.max_offline")
+    public int cacheMaxOffline = 500;
+
+    @CfgKey("cache.idle_seconds")
+    public int cacheIdleSeconds = 600;
+
     @CfgKey("default_persist")
     public boolean defaultPersist = true;
 
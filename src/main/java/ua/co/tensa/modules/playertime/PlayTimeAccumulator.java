@@ -0,0 +1,210 @@
+package ua.co.tensa.modules.playertime;
+
+import ua.co.tensa.Message;
+import ua.co.tensa.config.Database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+/**
+ * Write-behind buffer for play time. Deltas from session checkpoints and disconnects
+ * are merged per player and written with one batched upsert per flush; a failed
+ * flush puts its deltas back so they go out with the next one. With a journal, every
+ * delta is also appended there and each flush records how far the journal is committed.
+ * A flush writes, numbers and announces itself under one lock, so a scan run through
+ * {@link #holdingCommits} sees exactly the flushes up to the sequence it was given.
+ */
+final class PlayTimeAccumulator {
+
+    record Delta(String name, long millis) {}
+
+    /** Receives each committed flush with its sequence number, which counts up from 1. */
+    interface FlushListener {
+        void flushed(long seq, Map<UUID, Delta> deltas);
+    }
+
+    // Deltas taken for one flush and the last journal record they cover; settled once completed
+    private record Drained(Map<UUID, Delta> deltas, long journalSeq, AtomicBoolean settled) {}
+
+    private final Database database;
+    private final Database.Query addPlayTime;
+    private final Database.Query markJournal;
+    private final PlayTimeJournal journal; // null when journaling is off
+    private final Map<UUID, Delta> pending = new ConcurrentHashMap<>();
+    // Drained but not yet committed; still counted by pending(uuid) so readers never see a dip
+    private final Map<UUID, Long> inFlight = new ConcurrentHashMap<>();
+    private volatile CompletableFuture<Boolean> lastFlush = CompletableFuture.completedFuture(true);
+    private final AtomicLong flushSeq = new AtomicLong();
+    // Held from a flush's write until its listener returns; a lock rather than a monitor so a
+    // virtual thread waiting on it is not pinned
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private volatile FlushListener flushListener = (seq, flushed) -> {};
+
+    PlayTimeAccumulator(Database database, PlayTimeJournal journal) {
+        this.database = database;
+        this.journal = journal;
+        // Upsert so time is kept even if the join-time row insert never made it
+        this.addPlayTime = database.upsertQuery("player_times", "uuid, name, play_time", "uuid", "name, +play_time");
+        // GREATEST keeps the mark from moving back if flushes ever commit out of order
+        this.markJournal = database.updateQuery("player_time_journal",
+                "applied_seq = GREATEST(applied_seq, ?)", "journal_id = ?");
+    }
+
+    void add(UUID uuid, String name, long millis) {
+        if (millis <= 0) return;
+        if (journal == null) {
+            merge(uuid, name, millis);
+            return;
+        }
+        // Appending and merging together keeps every drained delta at or below the drained mark
+        synchronized (this) {
+            journal.append(uuid, name, millis);
+            merge(uuid, name, millis);
+        }
+    }
+
+    /** Queues journal records from a previous run that never reached the database. */
+    int recover() {
+        if (journal == null) return 0;
+        journal.unapplied().forEach(e -> merge(e.uuid(), e.name(), e.millis()));
+        return journal.unapplied().size();
+    }
+
+    private void merge(UUID uuid, String name, long millis) {
+        pending.merge(uuid, new Delta(name, millis),
+                (a, b) -> new Delta(b.name() != null ? b.name() : a.name(), a.millis() + b.millis()));
+    }
+
+    /** Called with the committed deltas after every successful flush. */
+    void onFlushed(FlushListener listener) {
+        this.flushListener = listener;
+    }
+
+    /**
+     * Runs {@code work} with the last committed flush sequence while no flush can commit, so
+     * a table scan done inside it contains every flush up to that sequence and none after.
+     */
+    <T> T holdingCommits(LongFunction<T> work) {
+        commitLock.lock();
+        try {
+            return work.apply(flushSeq.get());
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /** Time not yet committed for the player (buffered or being written), in millis. */
+    long pending(UUID uuid) {
+        Delta delta = pending.get(uuid);
+        Long writing = inFlight.get(uuid);
+        return (delta == null ? 0 : delta.millis()) + (writing == null ? 0 : writing);
+    }
+
+    CompletableFuture<Boolean> flush() {
+        // One flush at a time so journal marks commit in order; the rest waits for the next one
+        if (!lastFlush.isDone()) return lastFlush;
+        Drained drained = drain();
+        if (drained.deltas().isEmpty()) return CompletableFuture.completedFuture(true);
+        // A task that never ran (executor shut down) still has to put its deltas back
+        CompletableFuture<Boolean> future = database.executor().submit(() -> commit(drained), false)
+                .handle((ok, ex) -> ex == null ? ok : complete(drained, false));
+        lastFlush = future;
+        return future;
+    }
+
+    /** Waits for a running async flush, then writes the rest on the calling thread. */
+    void flushSync() {
+        try {
+            lastFlush.get(5, TimeUnit.SECONDS);
+        } catch (Exception ignored) {
+            // a failed flush has already restored its deltas
+        }
+        Drained drained = drain();
+        if (drained.deltas().isEmpty()) return;
+        boolean ok;
+        try {
+            ok = commit(drained);
+        } catch (RuntimeException e) {
+            ok = false;
+        }
+        if (!ok) {
+            Message.database("PLAYTIME FLUSH FAILED", drained.deltas().size() + " players' play time was not saved");
+        }
+    }
+
+    private boolean commit(Drained drained) {
+        commitLock.lock();
+        boolean ok = false;
+        try {
+            ok = journal == null
+                    ? database.executeBatch(addPlayTime, rows(drained.deltas()))
+                    : database.executeTransaction(batches(drained));
+        } finally {
+            complete(drained, ok);
+            commitLock.unlock();
+        }
+        return ok;
+    }
+
+    private boolean complete(Drained drained, boolean ok) {
+        if (!drained.settled().compareAndSet(false, true)) return ok;
+        if (ok) {
+            if (journal != null) journal.committed(drained.journalSeq());
+            flushListener.flushed(flushSeq.incrementAndGet(), drained.deltas());
+        } else {
+            restore(drained.deltas());
+        }
+        drained.deltas().forEach((uuid, delta) ->
+                inFlight.computeIfPresent(uuid, (id, left) -> left == delta.millis() ? null : left - delta.millis()));
+        return ok;
+    }
+
+    private Drained drain() {
+        if (journal == null) return new Drained(drainPending(), 0, new AtomicBoolean());
+        synchronized (this) {
+            return new Drained(drainPending(), journal.lastSeq(), new AtomicBoolean());
+        }
+    }
+
+    private Map<UUID, Delta> drainPending() {
+        Map<UUID, Delta> drained = new HashMap<>();
+        for (UUID uuid : pending.keySet()) {
+            // count as in flight before leaving pending, so pending(uuid) never drops in between
+            Delta delta = pending.get(uuid);
+            if (delta == null) continue;
+            inFlight.merge(uuid, delta.millis(), Long::sum);
+            if (pending.remove(uuid, delta)) {
+                drained.put(uuid, delta);
+            } else {
+                inFlight.computeIfPresent(uuid, (id, left) -> left == delta.millis() ? null : left - delta.millis());
+            }
+        }
+        return drained;
+    }
+
+    // Back into pending only: the journal still holds these records above its committed mark
+    private void restore(Map<UUID, Delta> drained) {
+        drained.forEach((uuid, delta) -> merge(uuid, delta.name(), delta.millis()));
+    }
+
+    private List<Database.Batch> batches(Drained drained) {
+        return List.of(new Database.Batch(addPlayTime, rows(drained.deltas())),
+                new Database.Batch(markJournal, List.<Object[]>of(new Object[]{drained.journalSeq(), journal.id()})));
+    }
+
+    private static List<Object[]> rows(Map<UUID, Delta> drained) {
+        List<Object[]> rows = new ArrayList<>(drained.size());
+        drained.forEach((uuid, delta) -> rows.add(new Object[]{uuid.toString(), delta.name(), delta.millis()}));
+        return rows;
+    }
+}
@@ -0,0 +1,90 @@
+package ua.co.tensa.modules.playertime;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stored play time totals held in memory. Online players are pinned from join to quit;
+ * offline players looked up by name are kept in a small LRU. Committed flush deltas are
+ * applied to both, so a cached total only ever lacks the caller-supplied unsaved time.
+ */
+final class PlayTimeCache {
+
+    record Stored(UUID uuid, String name, long total) {}
+
+    private final Map<UUID, Stored> online = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Stored> offline;
+
+    PlayTimeCache(int offlineCapacity) {
+        int capacity = Math.max(16, offlineCapacity);
+        this.offline = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Stored> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Pins a player who is online; drops any offline copy, which this supersedes. */
+    void pin(UUID uuid, String name, long total) {
+        online.put(uuid, new Stored(uuid, name, total));
+        synchronized (offline) {
+            offline.remove(key(name));
+        }
+    }
+
+    /** Moves a player who left into the offline LRU. */
+    void unpin(UUID uuid) {
+        Stored stored = online.remove(uuid);
+        if (stored != null) {
+            synchronized (offline) {
+                offline.put(key(stored.name()), stored);
+            }
+        }
+    }
+
+    Stored online(UUID uuid) {
+        return online.get(uuid);
+    }
+
+    Stored byName(String name) {
+        synchronized (offline) {
+            return offline.get(key(name));
+        }
+    }
+
+    void putOffline(Stored stored) {
+        if (online.containsKey(stored.uuid())) return;
+        synchronized (offline) {
+            offline.put(key(stored.name()), stored);
+        }
+    }
+
+    /** Drops every offline copy; online players are pinned again by the caller. */
+    void clearOffline() {
+        synchronized (offline) {
+            offline.clear();
+        }
+    }
+
+    void flushed(Map<UUID, PlayTimeAccumulator.Delta> deltas) {
+        deltas.forEach((uuid, delta) -> {
+            Stored updated = online.computeIfPresent(uuid,
+                    (id, s) -> new Stored(id, s.name(), s.total() + delta.millis()));
+            if (updated != null || delta.name() == null) return;
+            synchronized (offline) {
+                Stored s = offline.get(key(delta.name()));
+                if (s != null && s.uuid().equals(uuid)) {
+                    offline.put(key(s.name()), new Stored(uuid, s.name(), s.total() + delta.millis()));
+                }
+            }
+        });
+    }
+
+    private static String key(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,267 @@
+package ua.co.tensa.modules.playertime;
+
+import ua.co.tensa.Message;
+import ua.co.tensa.config.Database;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped log of play time deltas that are not yet in player_times.
+ * Every record gets the next sequence number, and each flush commits its deltas together
+ * with the highest sequence it covers (player_time_journal). After a crash only records
+ * above that mark are replayed, so no time is counted twice. Committed records at the front
+ * are skipped by moving the start slot forward; once everything written has been committed
+ * the journal starts over from the first slot, and when the end of the file is reached the
+ * live records are moved back to the front, so it keeps working even when appends never
+ * pause long enough for a full rewind.
+ *
+ * <p>Writes land in the OS page cache, which survives a proxy crash; {@link #sync()}
+ * forces them to disk for power loss as well.
+ */
+final class PlayTimeJournal implements AutoCloseable {
+
+    record Entry(long seq, UUID uuid, String name, long millis) {}
+
+    private static final int MAGIC = 0x54504A31; // "TPJ1"
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+    // header: magic, version, id (2 longs), base sequence at 24, start slot at 32
+    private static final int START_OFFSET = 32;
+    // seq, uuid (2 longs), millis, name length, name bytes, crc32 over everything before it
+    private static final int RECORD = 64;
+    private static final int NAME_OFFSET = 33;
+    private static final int NAME_BYTES = 27;
+    private static final int CRC_OFFSET = 60;
+    private static final long INITIAL_SIZE = HEADER + 4096L * RECORD;
+    private static final long MAX_SIZE = HEADER + (1L << 20) * RECORD;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final UUID id;
+    private final long applied;
+    private final List<Entry> unapplied;
+    private MappedByteBuffer buffer;
+    private int start;      // first slot that may hold an uncommitted record
+    private int position;   // next slot to write
+    private long lastSeq;   // highest sequence ever written
+    private boolean full;
+
+    private PlayTimeJournal(Path path, FileChannel channel, MappedByteBuffer buffer, UUID id, long applied) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.id = id;
+        this.applied = applied;
+        this.lastSeq = Math.max(buffer.getLong(24), applied);
+        this.unapplied = scan();
+    }
+
+    /**
+     * Opens or creates the journal and reads its committed mark. Returns null if either
+     * fails; the file is then left untouched for the next start and play time is only
+     * protected by the flush interval.
+     */
+    static PlayTimeJournal open(Path path, Database database) {
+        try {
+            Files.createDirectories(path.getParent());
+            if (Files.exists(path) && !hasValidHeader(path)) {
+                Path broken = path.resolveSibling(path.getFileName() + ".corrupt");
+                Files.move(path, broken, StandardCopyOption.REPLACE_EXISTING);
+                Message.warn("Play time journal header is invalid, moved aside to " + broken.getFileName());
+            }
+            boolean created = !Files.exists(path);
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = Math.min(MAX_SIZE, Math.max(INITIAL_SIZE, channel.size()));
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (created) {
+                UUID fresh = UUID.randomUUID();
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putLong(8, fresh.getMostSignificantBits());
+                buffer.putLong(16, fresh.getLeastSignificantBits());
+                buffer.putLong(24, 0L);
+                buffer.force();
+            }
+            UUID id = new UUID(buffer.getLong(8), buffer.getLong(16));
+
+            Long applied = database.select("player_time_journal", "applied_seq", "journal_id = ?",
+                    rs -> rs.next() ? rs.getLong(1) : -1L, id.toString());
+            if (applied == null) {
+                channel.close();
+                Message.error("Play time journal disabled: could not read its committed mark");
+                return null;
+            }
+            if (applied < 0) {
+                if (!database.insert("player_time_journal", "journal_id, applied_seq", id.toString(), 0L)) {
+                    channel.close();
+                    Message.error("Play time journal disabled: could not register it in the database");
+                    return null;
+                }
+                applied = 0L;
+            }
+            return new PlayTimeJournal(path, channel, buffer, id, applied);
+        } catch (IOException e) {
+            Message.error("Play time journal disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean hasValidHeader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER) return false;
+            ByteBuffer header = ByteBuffer.allocate(8);
+            channel.read(header, 0);
+            return header.getInt(0) == MAGIC && header.getInt(4) == VERSION;
+        }
+    }
+
+    String id() {
+        return id.toString();
+    }
+
+    /** Records left over from the last run that the database has not seen. */
+    List<Entry> unapplied() {
+        return unapplied;
+    }
+
+    synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    /** Appends a delta; returns false if the journal is full and the delta is only in memory. */
+    synchronized boolean append(UUID uuid, String name, long millis) {
+        if (HEADER + (position + 1) * RECORD > buffer.capacity() && !compact() && !grow()) {
+            return false;
+        }
+        int offset = HEADER + position * RECORD;
+        long seq = lastSeq + 1;
+        buffer.putLong(offset, seq);
+        buffer.putLong(offset + 8, uuid.getMostSignificantBits());
+        buffer.putLong(offset + 16, uuid.getLeastSignificantBits());
+        buffer.putLong(offset + 24, millis);
+        byte[] bytes = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, NAME_BYTES);
+        buffer.put(offset + 32, (byte) length);
+        buffer.put(offset + NAME_OFFSET, bytes, 0, length);
+        buffer.putInt(offset + CRC_OFFSET, crc(offset));
+        position++;
+        lastSeq = seq;
+        return true;
+    }
+
+    /**
+     * Called after records up to {@code seq} committed. The start slot moves past them; if
+     * nothing was appended since, the journal rewinds and older records fall below the new base.
+     */
+    synchronized void committed(long seq) {
+        int slot = start;
+        while (slot < position && buffer.getLong(HEADER + slot * RECORD) <= seq) slot++;
+        if (slot == start) return;
+        if (slot == position) {
+            // Base first: a crash in between still finds only committed records at the old start
+            buffer.putLong(24, lastSeq);
+            buffer.putInt(START_OFFSET, 0);
+            start = 0;
+            position = 0;
+        } else {
+            buffer.putInt(START_OFFSET, slot);
+            start = slot;
+        }
+        full = false;
+    }
+
+    synchronized void sync() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            Message.warn("Play time journal close failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves the live records to the front when they fit entirely before the start slot.
+     * The copies never overlap the originals, and the start slot is switched only after
+     * the copy, so a crash at any point still leaves one complete run to scan.
+     */
+    private boolean compact() {
+        int live = position - start;
+        if (start == 0 || live > start) return false;
+        for (int i = 0; i < live; i++) {
+            buffer.put(HEADER + i * RECORD, buffer, HEADER + (start + i) * RECORD, RECORD);
+        }
+        buffer.putInt(START_OFFSET, 0);
+        start = 0;
+        position = live;
+        return true;
+    }
+
+    private boolean grow() {
+        long size = buffer.capacity();
+        if (size < MAX_SIZE) {
+            try {
+                buffer.force();
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(MAX_SIZE, size * 2));
+                return true;
+            } catch (IOException e) {
+                Message.warn("Play time journal could not grow: " + e.getMessage());
+            }
+        }
+        if (!full) {
+            full = true;
+            Message.warn("Play time journal " + path.getFileName() + " is full until the next successful flush");
+        }
+        return false;
+    }
+
+    // A record is valid while its checksum matches and sequences keep increasing from the base
+    private List<Entry> scan() {
+        List<Entry> entries = new ArrayList<>();
+        long prev = buffer.getLong(24);
+        int slots = (buffer.capacity() - HEADER) / RECORD;
+        start = buffer.getInt(START_OFFSET);
+        if (start < 0 || start > slots) start = 0;
+        int slot = start;
+        for (int offset = HEADER + slot * RECORD; offset + RECORD <= buffer.capacity(); offset += RECORD, slot++) {
+            long seq = buffer.getLong(offset);
+            if (seq <= prev || buffer.getInt(offset + CRC_OFFSET) != crc(offset)) break;
+            int length = Math.min(buffer.get(offset + 32) & 0xFF, NAME_BYTES);
+            byte[] name = new byte[length];
+            buffer.get(offset + NAME_OFFSET, name);
+            if (seq > applied) {
+                entries.add(new Entry(seq,
+                        new UUID(buffer.getLong(offset + 8), buffer.getLong(offset + 16)),
+                        length == 0 ? null : new String(name, StandardCharsets.UTF_8),
+                        buffer.getLong(offset + 24)));
+            }
+            prev = seq;
+            lastSeq = Math.max(lastSeq, seq);
+        }
+        position = slot;
+        return List.copyOf(entries);
+    }
+
+    private int crc(int offset) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, CRC_OFFSET));
+        return (int) crc.getValue();
+    }
+}
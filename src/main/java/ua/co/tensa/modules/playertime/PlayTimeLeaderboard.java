@@ -0,0 +1,145 @@
+package ua.co.tensa.modules.playertime;
+
+import ua.co.tensa.config.Database;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * In-memory top list. Holds the stored totals of the top {@code capacity} players loaded at
+ * start plus everyone seen online since; only those players' totals can change, so the real
+ * top N is always among them. Flushed deltas are added as they commit and live (unsaved)
+ * time is added on read. Rankings are recomputed at most once per second.
+ */
+final class PlayTimeLeaderboard {
+
+    private static final long SNAPSHOT_TTL_MS = 1_000;
+
+    private record Stored(String name, long total) {}
+
+    private final int capacity;
+    private final ToLongFunction<UUID> unsaved;
+    private final Predicate<UUID> online;
+    private final Map<UUID, Stored> stored = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private volatile List<PlayerTimeTracker.PlayerTimeEntry> snapshot = List.of();
+    private volatile long snapshotAt;
+
+    PlayTimeLeaderboard(int capacity, ToLongFunction<UUID> unsaved, Predicate<UUID> online) {
+        this.capacity = Math.max(10, capacity);
+        this.unsaved = unsaved;
+        this.online = online;
+    }
+
+    /**
+     * Submitted as a write so the drop-oldest overflow policy cannot shed the load. The read
+     * runs while the accumulator holds its commits back, so the totals it stores are exact
+     * and every later flush adds on top of them.
+     */
+    CompletableFuture<Void> load(Database database, PlayTimeAccumulator accumulator) {
+        return database.executor().submit(() -> accumulator.holdingCommits(seq -> database.select("player_times",
+                "uuid, name, play_time", "play_time > 0 ORDER BY play_time DESC, uuid DESC LIMIT ?",
+                rs -> {
+                    while (rs.next()) {
+                        UUID uuid = parseUuid(rs.getString(1));
+                        if (uuid != null) stored.put(uuid, new Stored(rs.getString(2), rs.getLong(3)));
+                    }
+                    return null;
+                }, capacity)), false)
+            .thenRun(() -> {
+                loaded = true;
+                snapshotAt = 0;
+            });
+    }
+
+    /**
+     * Drops every total and loads the top again, for when player_times changed outside the
+     * tracker. Top lists fall back to SQL meanwhile; online players are re-added through
+     * {@link #known}.
+     */
+    CompletableFuture<Void> reload(Database database, PlayTimeAccumulator accumulator) {
+        loaded = false;
+        stored.clear();
+        snapshot = List.of();
+        return load(database, accumulator);
+    }
+
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Stored total read for a player who just joined. A total already tracked here is kept:
+     * it has been maintained from flushes and may be newer than the read.
+     */
+    void known(UUID uuid, String name, long total) {
+        stored.merge(uuid, new Stored(name, total), (old, fresh) -> new Stored(name, old.total()));
+    }
+
+    void rename(UUID uuid, String name) {
+        stored.computeIfPresent(uuid, (id, s) -> new Stored(name, s.total()));
+    }
+
+    void flushed(Map<UUID, PlayTimeAccumulator.Delta> deltas) {
+        deltas.forEach((uuid, delta) -> stored.computeIfPresent(uuid,
+                (id, s) -> new Stored(delta.name() != null ? delta.name() : s.name(), s.total() + delta.millis())));
+    }
+
+    /** Top {@code n} (at most capacity) including live session time; empty until loaded. */
+    List<PlayerTimeTracker.PlayerTimeEntry> top(int n) {
+        List<PlayerTimeTracker.PlayerTimeEntry> current = snapshot;
+        if (System.currentTimeMillis() - snapshotAt >= SNAPSHOT_TTL_MS) {
+            current = rebuild();
+        }
+        return current.size() <= n ? current : current.subList(0, n);
+    }
+
+    /** 1-based entry, or null when there are fewer players. */
+    PlayerTimeTracker.PlayerTimeEntry at(int position) {
+        List<PlayerTimeTracker.PlayerTimeEntry> list = top(capacity);
+        return position >= 1 && position <= list.size() ? list.get(position - 1) : null;
+    }
+
+    private synchronized List<PlayerTimeTracker.PlayerTimeEntry> rebuild() {
+        long now = System.currentTimeMillis();
+        if (now - snapshotAt < SNAPSHOT_TTL_MS) return snapshot;
+        // Ties ordered like SQL and the rank index: by the uuid string, descending
+        record Ranked(UUID uuid, String id, String name, long total) {}
+        List<Ranked> ranked = new ArrayList<>(stored.size());
+        stored.forEach((uuid, s) -> ranked.add(new Ranked(uuid, uuid.toString(), s.name(), s.total() + unsaved.applyAsLong(uuid))));
+        ranked.sort(Comparator.comparingLong(Ranked::total).thenComparing(Ranked::id).reversed());
+
+        List<PlayerTimeTracker.PlayerTimeEntry> top = new ArrayList<>(Math.min(capacity, ranked.size()));
+        for (int i = 0; i < ranked.size(); i++) {
+            Ranked r = ranked.get(i);
+            if (i < capacity) {
+                if (r.total() > 0) top.add(new PlayerTimeTracker.PlayerTimeEntry(r.name(), r.total()));
+            } else if (!online.test(r.uuid()) && unsaved.applyAsLong(r.uuid()) == 0) {
+                // below the cut, offline and fully written: can only re-enter by playing again
+                stored.remove(r.uuid());
+            }
+        }
+        snapshot = List.copyOf(top);
+        snapshotAt = now;
+        return snapshot;
+    }
+
+    private static UUID parseUuid(String value) {
+        try {
+            return value == null ? null : UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package ua.co.tensa.modules.playertime;
+
+import ua.co.tensa.config.Database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stored play time of every player_times row in an order-statistic treap, so
+ * "how many players have more time than X" is O(log n) instead of a table scan.
+ * Rows are keyed by (play_time, uuid), the order of play_time_idx, so a position can be
+ * turned into a keyset cursor for SQL. Seeded by streaming the table once; kept current
+ * from committed flush deltas.
+ */
+final class PlayTimeRankIndex {
+
+    /** A row's place in the index; ties on play_time are ordered by the uuid string. */
+    record Key(long total, String uuid) {}
+
+    private static final class Node {
+        final long total;
+        final String id;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        int size = 1;    // rows in this subtree
+        Node left, right;
+
+        Node(long total, String id) {
+            this.total = total;
+            this.id = id;
+        }
+    }
+
+    // One accumulator flush that committed while the seed scan was pending
+    private record Deferred(long seq, Map<UUID, PlayTimeAccumulator.Delta> deltas) {}
+
+    private final Map<UUID, Long> totals = new HashMap<>();
+    private Node root;
+    private boolean seeded;
+    // Replayed once the scan finishes; null after a failed seed so nothing piles up
+    private List<Deferred> deferred = new ArrayList<>();
+
+    /**
+     * Streams player_times into the index. Submitted as a write so the drop-oldest overflow
+     * policy cannot shed it. The scan runs while the accumulator holds its commits back, so
+     * flushes at or below the sequence it reports are in the rows read and every later one
+     * arrives through {@link #flushed} and is replayed. Seeding a seeded index again
+     * overwrites every row's total with the stored one, so ranks keep serving meanwhile.
+     */
+    CompletableFuture<Long> seed(Database database, PlayTimeAccumulator accumulator) {
+        seedStarted();
+        long[] seenSeq = new long[1];
+        return database.executor().submit(() -> accumulator.holdingCommits(seq -> {
+            seenSeq[0] = seq;
+            return database.stream("player_times", "uuid, play_time", "1 = 1", row -> {
+                UUID uuid = parseUuid(row.getString(1));
+                if (uuid != null) loaded(uuid, row.getLong(2));
+            });
+        }), false).handle((rows, ex) -> {
+            boolean ok = ex == null && rows >= 0;
+            seedFinished(ok, seenSeq[0]);
+            if (ex != null) throw new CompletionException(ex);
+            if (!ok) throw new IllegalStateException("player_times scan failed");
+            return rows;
+        });
+    }
+
+    // A retry after a failed seed defers flushes again
+    private synchronized void seedStarted() {
+        if (!seeded && deferred == null) deferred = new ArrayList<>();
+    }
+
+    /** One row of the seed scan. */
+    synchronized void loaded(UUID uuid, long total) {
+        set(uuid, total);
+    }
+
+    /** Ends the seed: replays flushes newer than {@code seenSeq}, or stops deferring after a failure. */
+    synchronized void seedFinished(boolean ok, long seenSeq) {
+        List<Deferred> pending = deferred;
+        deferred = null;
+        if (!ok || pending == null) return;
+        seeded = true;
+        for (Deferred d : pending) {
+            if (d.seq() > seenSeq) d.deltas().forEach((uuid, delta) -> add(uuid, delta.millis()));
+        }
+    }
+
+    synchronized boolean isSeeded() {
+        return seeded;
+    }
+
+    private void add(UUID uuid, long delta) {
+        Long old = totals.get(uuid);
+        set(uuid, (old == null ? 0 : old) + delta);
+    }
+
+    synchronized void flushed(long seq, Map<UUID, PlayTimeAccumulator.Delta> deltas) {
+        if (!seeded) {
+            if (deferred != null) deferred.add(new Deferred(seq, deltas));
+            return;
+        }
+        deltas.forEach((uuid, delta) -> add(uuid, delta.millis()));
+    }
+
+    /** Stored total for the player, or 0 if unknown. */
+    synchronized long stored(UUID uuid) {
+        Long total = totals.get(uuid);
+        return total == null ? 0 : total;
+    }
+
+    /** 1-based position of a player with the given total; ties share a rank. */
+    synchronized int rankOf(long total) {
+        return countGreater(root, total) + 1;
+    }
+
+    synchronized int size() {
+        return totals.size();
+    }
+
+    /**
+     * Row at a 0-based position in {@code play_time DESC, uuid DESC} order, or null past
+     * the end.
+     */
+    synchronized Key keyAt(int position) {
+        if (position < 0 || position >= size(root)) return null;
+        Node node = root;
+        while (node != null) {
+            int larger = size(node.right);
+            if (position < larger) {
+                node = node.right;
+            } else if (position == larger) {
+                return new Key(node.total, node.id);
+            } else {
+                position -= larger + 1;
+                node = node.left;
+            }
+        }
+        return null;
+    }
+
+    private void set(UUID uuid, long total) {
+        Long old = totals.put(uuid, total);
+        String id = uuid.toString();
+        if (old != null) {
+            if (old == total) return;
+            root = remove(root, old, id);
+        }
+        root = insert(root, total, id);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static int compare(long total, String id, Node node) {
+        int c = Long.compare(total, node.total);
+        return c != 0 ? c : id.compareTo(node.id);
+    }
+
+    private static Node rotateRight(Node node) {
+        Node l = node.left;
+        node.left = l.right;
+        l.right = node;
+        update(node);
+        update(l);
+        return l;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node r = node.right;
+        node.right = r.left;
+        r.left = node;
+        update(node);
+        update(r);
+        return r;
+    }
+
+    // Keys are unique: a player's old key is removed before the new one goes in
+    private static Node insert(Node node, long total, String id) {
+        if (node == null) return new Node(total, id);
+        if (compare(total, id, node) < 0) {
+            node.left = insert(node.left, total, id);
+            if (node.left.priority > node.priority) node = rotateRight(node);
+        } else {
+            node.right = insert(node.right, total, id);
+            if (node.right.priority > node.priority) node = rotateLeft(node);
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node remove(Node node, long total, String id) {
+        if (node == null) return null;
+        int c = compare(total, id, node);
+        if (c < 0) {
+            node.left = remove(node.left, total, id);
+        } else if (c > 0) {
+            node.right = remove(node.right, total, id);
+        } else if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        } else if (node.left.priority > node.right.priority) {
+            node = rotateRight(node);
+            node.right = remove(node.right, total, id);
+        } else {
+            node = rotateLeft(node);
+            node.left = remove(node.left, total, id);
+        }
+        update(node);
+        return node;
+    }
+
+    private static int countGreater(Node node, long total) {
+        int greater = 0;
+        while (node != null) {
+            if (total < node.total) {
+                greater += 1 + size(node.right);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return greater;
+    }
+
+    private static UUID parseUuid(String value) {
+        try {
+            return value == null ? null : UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
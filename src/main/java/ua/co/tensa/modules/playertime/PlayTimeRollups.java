@@ -0,0 +1,262 @@
+package ua.co.tensa.modules.playertime;
+
+import ua.co.tensa.Message;
+import ua.co.tensa.config.Database;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Play time per backend server, pre-aggregated into daily and weekly buckets
+ * (player_time_daily / player_time_weekly). Session spans are buffered per player,
+ * day and server, then written as batched upserts into both tables, each also under
+ * the {@link #ALL_SERVERS} row. Period top lists and per-server totals are then single
+ * index range reads. Online players' current buckets are held in memory so placeholders
+ * never query.
+ */
+final class PlayTimeRollups {
+
+    static final String ALL_SERVERS = "*";
+
+    enum Period {
+        DAY("player_time_daily"),
+        WEEK("player_time_weekly");
+
+        final String table;
+
+        Period(String table) {
+            this.table = table;
+        }
+
+        /** Bucket id: the epoch day itself, or the epoch day of that week's Monday. */
+        long bucket(long epochDay) {
+            // epoch day 0 was a Thursday
+            return this == DAY ? epochDay : epochDay - Math.floorMod(epochDay + 3, 7);
+        }
+    }
+
+    // Unwritten time is keyed by day; weekly rows are summed from it at flush
+    private record Slot(long day, String server) {}
+
+    private record Row(UUID uuid, String server, long bucket) {}
+
+    private record Loaded(Period period, long bucket, String server) {}
+
+    private final Database database;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Predicate<UUID> online;
+    private final Map<Period, Database.Query> upserts = new HashMap<>();
+    private final Map<Period, Database.Query> tops = new HashMap<>();
+    private final Database.Query currentBuckets;
+    private final Map<UUID, Map<Slot, Long>> pending = new HashMap<>();
+    private final Map<UUID, Map<Slot, Long>> inFlight = new HashMap<>();
+    // Stored totals of online players' current buckets; absent until loaded
+    private final Map<UUID, Map<Loaded, Long>> stored = new HashMap<>();
+    private long commits;   // successful flushes, to spot loads that raced one
+    private CompletableFuture<Boolean> lastFlush = CompletableFuture.completedFuture(true);
+
+    PlayTimeRollups(Database database, Predicate<UUID> online) {
+        this.database = database;
+        this.online = online;
+        for (Period period : Period.values()) {
+            upserts.put(period, database.upsertQuery(period.table,
+                    "uuid, server, bucket, play_time", "uuid, server, bucket", "+play_time"));
+            // Keyed on the rollup table so each flush invalidates cached top lists
+            tops.put(period, new Database.Query(period.table,
+                    "SELECT p.name, r.play_time FROM " + database.table(period.table) + " r JOIN "
+                            + database.table("player_times") + " p ON p.uuid = r.uuid"
+                            + " WHERE r.bucket = ? AND r.server = ? ORDER BY r.play_time DESC LIMIT ?"));
+        }
+        this.currentBuckets = database.unionAllQuery(
+                database.selectQuery(Period.DAY.table, "1 AS period, bucket, server, play_time", "uuid = ? AND bucket = ?"),
+                database.selectQuery(Period.WEEK.table, "2 AS period, bucket, server, play_time", "uuid = ? AND bucket = ?"));
+    }
+
+    long today() {
+        return LocalDate.ofInstant(Instant.now(), zone).toEpochDay();
+    }
+
+    /** Start of the current day or week, in epoch millis. */
+    long bucketStart(Period period) {
+        return LocalDate.ofEpochDay(period.bucket(today())).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /** Adds time spent on a server between two instants, split at midnight. */
+    synchronized void add(UUID uuid, String server, long from, long to) {
+        if (server == null) return;
+        Map<Slot, Long> slots = pending.computeIfAbsent(uuid, id -> new HashMap<>());
+        long start = from;
+        while (start < to) {
+            long day = LocalDate.ofInstant(Instant.ofEpochMilli(start), zone).toEpochDay();
+            long end = Math.min(to, LocalDate.ofEpochDay(day + 1).atStartOfDay(zone).toInstant().toEpochMilli());
+            slots.merge(new Slot(day, server), end - start, Long::sum);
+            start = end;
+        }
+    }
+
+    /** Reads the player's current day and week buckets; retried if a flush commits meanwhile. */
+    void load(UUID uuid) {
+        load(uuid, 3);
+    }
+
+    private void load(UUID uuid, int attempts) {
+        long seen;
+        synchronized (this) {
+            seen = commits;
+        }
+        long day = today();
+        long week = Period.WEEK.bucket(day);
+        database.queryAsync(currentBuckets, rs -> {
+                    Map<Loaded, Long> loaded = new HashMap<>();
+                    while (rs.next()) {
+                        Period period = rs.getInt(1) == 1 ? Period.DAY : Period.WEEK;
+                        loaded.put(new Loaded(period, rs.getLong(2), rs.getString(3)), rs.getLong(4));
+                    }
+                    return loaded;
+                }, uuid.toString(), day, uuid.toString(), week)
+            .thenAccept(loaded -> {
+                if (loaded == null) return;
+                boolean retry;
+                synchronized (this) {
+                    retry = commits != seen;
+                    if (!retry && online.test(uuid)) stored.put(uuid, loaded);
+                }
+                if (retry && attempts > 1) load(uuid, attempts - 1);
+            });
+    }
+
+    synchronized void forget(UUID uuid) {
+        stored.remove(uuid);
+    }
+
+    /**
+     * Time in the current bucket on {@code server} (or all servers), excluding the running
+     * session, or -1 if the player's buckets are not loaded.
+     */
+    synchronized long current(UUID uuid, Period period, String server) {
+        Map<Loaded, Long> loaded = stored.get(uuid);
+        if (loaded == null) return -1;
+        long bucket = period.bucket(today());
+        long total = loaded.getOrDefault(new Loaded(period, bucket, server), 0L);
+        total += unwritten(pending.get(uuid), period, bucket, server);
+        total += unwritten(inFlight.get(uuid), period, bucket, server);
+        return total;
+    }
+
+    private static long unwritten(Map<Slot, Long> slots, Period period, long bucket, String server) {
+        if (slots == null) return 0;
+        long total = 0;
+        for (Map.Entry<Slot, Long> e : slots.entrySet()) {
+            Slot slot = e.getKey();
+            if (period.bucket(slot.day()) == bucket
+                    && (ALL_SERVERS.equals(server) || slot.server().equals(server))) {
+                total += e.getValue();
+            }
+        }
+        return total;
+    }
+
+    /** Top players for the current bucket, read through the query cache. */
+    CompletableFuture<List<PlayerTimeTracker.PlayerTimeEntry>> top(Period period, String server, int limit) {
+        return database.queryCachedAsync(tops.get(period), rs -> {
+            List<PlayerTimeTracker.PlayerTimeEntry> entries = new ArrayList<>();
+            while (rs.next()) {
+                entries.add(new PlayerTimeTracker.PlayerTimeEntry(rs.getString(1), rs.getLong(2)));
+            }
+            return List.copyOf(entries);
+        }, period.bucket(today()), server, limit);
+    }
+
+    CompletableFuture<Boolean> flush() {
+        Map<UUID, Map<Slot, Long>> drained;
+        synchronized (this) {
+            // One flush at a time: the next one picks up whatever is pending then
+            if (!lastFlush.isDone()) return lastFlush;
+            drained = drain();
+        }
+        if (drained.isEmpty()) return CompletableFuture.completedFuture(true);
+        CompletableFuture<Boolean> future = database.executeTransactionAsync(batches(drained))
+                .handle((ok, ex) -> complete(drained, ex == null && Boolean.TRUE.equals(ok)));
+        synchronized (this) {
+            lastFlush = future;
+        }
+        return future;
+    }
+
+    void flushSync() {
+        CompletableFuture<Boolean> running;
+        synchronized (this) {
+            running = lastFlush;
+        }
+        try {
+            running.get(5, TimeUnit.SECONDS);
+        } catch (Exception ignored) {
+            // a failed flush has already restored its spans
+        }
+        Map<UUID, Map<Slot, Long>> drained;
+        synchronized (this) {
+            drained = drain();
+        }
+        if (drained.isEmpty()) return;
+        if (!complete(drained, database.executeTransaction(batches(drained)))) {
+            Message.database("PLAYTIME FLUSH FAILED", drained.size() + " players' per-server play time was not saved");
+        }
+    }
+
+    private Map<UUID, Map<Slot, Long>> drain() {
+        Map<UUID, Map<Slot, Long>> drained = new HashMap<>(pending);
+        pending.clear();
+        drained.forEach((uuid, slots) -> {
+            Map<Slot, Long> writing = inFlight.computeIfAbsent(uuid, id -> new HashMap<>());
+            slots.forEach((slot, millis) -> writing.merge(slot, millis, Long::sum));
+        });
+        return drained;
+    }
+
+    private synchronized boolean complete(Map<UUID, Map<Slot, Long>> drained, boolean ok) {
+        drained.forEach((uuid, slots) -> {
+            Map<Slot, Long> writing = inFlight.get(uuid);
+            Map<Loaded, Long> loaded = stored.get(uuid);
+            slots.forEach((slot, millis) -> {
+                if (writing != null) writing.computeIfPresent(slot, (s, left) -> left == millis ? null : left - millis);
+                if (!ok) {
+                    pending.computeIfAbsent(uuid, id -> new HashMap<>()).merge(slot, millis, Long::sum);
+                } else if (loaded != null) {
+                    for (Period period : Period.values()) {
+                        long bucket = period.bucket(slot.day());
+                        loaded.merge(new Loaded(period, bucket, slot.server()), millis, Long::sum);
+                        loaded.merge(new Loaded(period, bucket, ALL_SERVERS), millis, Long::sum);
+                    }
+                }
+            });
+            if (writing != null && writing.isEmpty()) inFlight.remove(uuid);
+        });
+        if (ok) commits++;
+        return ok;
+    }
+
+    private List<Database.Batch> batches(Map<UUID, Map<Slot, Long>> drained) {
+        List<Database.Batch> batches = new ArrayList<>(2);
+        for (Period period : Period.values()) {
+            Map<Row, Long> rows = new HashMap<>();
+            drained.forEach((uuid, slots) -> slots.forEach((slot, millis) -> {
+                long bucket = period.bucket(slot.day());
+                rows.merge(new Row(uuid, slot.server(), bucket), millis, Long::sum);
+                rows.merge(new Row(uuid, ALL_SERVERS, bucket), millis, Long::sum);
+            }));
+            List<Object[]> params = new ArrayList<>(rows.size());
+            rows.forEach((row, millis) -> params.add(new Object[]{row.uuid().toString(), row.server(), row.bucket(), millis}));
+            batches.add(new Database.Batch(upserts.get(period), params));
+        }
+        return batches;
+    }
+}
@@ -1,8 +1,10 @@
 package ua.co.tensa.modules.playertime;
 
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.connection.PostLoginEvent;
+import com.velocitypowered.api.event.player.ServerConnectedEvent;
 
 public class PlayerEventListener {
 
@@ -12,13 +14,20 @@ public class PlayerEventListener {
         this.timeTracker = timeTracker;
     }
 
+    // Off the event thread: under a saturated DB queue the submit itself may block or run the statement inline
     @Subscribe
-    public void onPlayerJoin(PostLoginEvent event) {
-        timeTracker.playerJoined(event.getPlayer().getUniqueId(), event.getPlayer().getUsername());
+    public EventTask onPlayerJoin(PostLoginEvent event) {
+        return EventTask.async(() ->
+                timeTracker.playerJoined(event.getPlayer().getUniqueId(), event.getPlayer().getUsername()));
     }
 
     @Subscribe
-    public void onPlayerLeave(DisconnectEvent event) {
-        timeTracker.playerLeft(event.getPlayer().getUniqueId());
+    public void onServerConnected(ServerConnectedEvent event) {
+        timeTracker.serverSwitched(event.getPlayer().getUniqueId(), event.getServer().getServerInfo().getName());
+    }
+
+    @Subscribe
+    public EventTask onPlayerLeave(DisconnectEvent event) {
+        return EventTask.async(() -> timeTracker.playerLeft(event.getPlayer().getUniqueId()));
     }
 }
@@ -7,6 +7,7 @@ import com.velocitypowered.api.proxy.Player;
 import ua.co.tensa.Message;
 import ua.co.tensa.Tensa;
 import ua.co.tensa.config.Lang;
+import ua.co.tensa.players.PlayerNameIndex;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -40,6 +41,7 @@ public class PlayerTimeCommand implements SimpleCommand {
                 }
                 Message.sendLang(sender, Lang.player_time,
                         "{time}", PlayerTimeModule.formatTime(playTime));
+                sendRank(sender, timeTracker.rankForTime(playTime));
             });
         } else if (args.length == 1 && sender.hasPermission("TENSA.playertime.admin")) {
             String playerName = args[0];
@@ -51,12 +53,19 @@ public class PlayerTimeCommand implements SimpleCommand {
                 Message.sendLang(sender, Lang.player_time_other,
                         "{player}", playerName,
                         "{time}", PlayerTimeModule.formatTime(playTime));
+                sendRank(sender, timeTracker.rankForTime(playTime));
             });
         } else {
             Message.sendLang(sender, Lang.player_time_usage);
         }
     }
 
+    private static void sendRank(CommandSource sender, int rank) {
+        if (rank > 0) {
+            Message.sendLang(sender, Lang.player_time_rank, "{rank}", String.valueOf(rank));
+        }
+    }
+
     public static void unregister() {
         CommandManager manager = Tensa.server.getCommandManager();
         manager.unregister("tplayertime");
@@ -65,15 +74,13 @@ public class PlayerTimeCommand implements SimpleCommand {
 
     @Override
     public CompletableFuture<List<String>> suggestAsync(final Invocation invocation) {
-        ArrayList<String> suggestions = new ArrayList<>();
         CommandSource source = invocation.source();
         String[] args = invocation.arguments();
-        if (args.length == 0 && hasAdminPermission(source)) {
-            for (Player player : Tensa.server.getAllPlayers()) {
-                suggestions.add(player.getUsername().trim());
-            }
+        if (args.length <= 1 && hasAdminPermission(source)) {
+            // offline players too, straight from the in-memory name index
+            return CompletableFuture.completedFuture(PlayerNameIndex.complete(args.length == 0 ? "" : args[0], 50));
         }
-        return CompletableFuture.completedFuture(suggestions);
+        return CompletableFuture.completedFuture(new ArrayList<>());
     }
 
     private boolean hasAdminPermission(CommandSource source) {
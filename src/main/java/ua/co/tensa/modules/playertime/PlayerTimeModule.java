@@ -2,9 +2,10 @@ package ua.co.tensa.modules.playertime;
 
 import ua.co.tensa.Tensa;
 import ua.co.tensa.config.Database;
-import ua.co.tensa.config.DatabaseInitializer;
 import ua.co.tensa.modules.AbstractModule;
 import ua.co.tensa.modules.ModuleEntry;
+import ua.co.tensa.modules.playertime.data.PlayerTimeConfig;
+import ua.co.tensa.placeholders.PlaceholderManager;
 
 import java.util.concurrent.TimeUnit;
 
@@ -16,19 +17,40 @@ public class PlayerTimeModule {
         @Override protected void onDisable() { PlayerTimeModule.disableImpl(); }
     };
     public static final ModuleEntry ENTRY = IMPL;
+    private static PlayerTimeTracker tracker;
 
     private static void enableImpl() {
+        PlayerTimeConfig.get().reloadCfg();
         initialize();
     }
 
     private static void disableImpl() {
         PlayerTimeCommand.unregister();
         PlayerTimeTopCommand.unregister();
+        PlaceholderManager.unregisterRawPrefixResolver("tensa_top_");
+        PlaceholderManager.unregisterAnglePrefixResolver("tensa_top_");
+        PlaceholderManager.unregister("tensa_playtime_rank");
+        PlaceholderManager.unregister("tensa_playtime");
+        for (PlayTimeRollups.Period period : PlayTimeRollups.Period.values()) {
+            String key = "tensa_playtime_" + period.name().toLowerCase(java.util.Locale.ROOT);
+            PlaceholderManager.unregister(key);
+            PlaceholderManager.unregisterRawPrefixResolver(key + "_");
+            PlaceholderManager.unregisterAnglePrefixResolver(key + "_");
+        }
+        if (tracker != null) {
+            tracker.shutdown();
+            tracker = null;
+        }
     }
 
     public static void enable() { IMPL.enable(); }
     public static void disable() { IMPL.disable(); }
 
+    /** Running tracker, or null while the module is off. */
+    public static PlayerTimeTracker getTracker() {
+        return tracker;
+    }
+
     public static void initialize() {
         if (Tensa.config == null || !Tensa.config.databaseEnable()){
             ua.co.tensa.Message.warn("The PlayerTime module requires the use of a database, enable it in the configuration file");
@@ -36,23 +58,79 @@ public class PlayerTimeModule {
         }
         Database database = Tensa.database;
         if (database.enabled){
-            if (!database.tableExists("player_times")){
-                DatabaseInitializer databaseInitializer = new DatabaseInitializer(database);
-                databaseInitializer.createPlayerTimeTable();
-            }
-            PlayerTimeTracker timeTracker = new PlayerTimeTracker(database);
+            // Schema (table, unique uuid, indexes) is owned by DatabaseInitializer migrations
+            PlayerTimeConfig cfg = PlayerTimeConfig.get();
+            PlayTimeJournal journal = cfg.journalEnable
+                    ? PlayTimeJournal.open(Tensa.pluginPath.resolve("player_time").resolve("journal.dat"), database)
+                    : null;
+            PlayerTimeTracker timeTracker = new PlayerTimeTracker(database,
+                    cfg.leaderboardSize, cfg.offlineCacheSize, journal);
+            tracker = timeTracker;
+            timeTracker.start();
             PlayerEventListener eventListener = new PlayerEventListener(timeTracker);
             ((AbstractModule) IMPL).registerListener(eventListener);
             AbstractModule.registerCommand("tplayertime", "tptime", new PlayerTimeCommand(timeTracker));
             AbstractModule.registerCommand("tplayertop", "tptop", new PlayerTimeTopCommand(timeTracker));
+            // Players already online (module enabled or reloaded at runtime) start a session now
+            Tensa.server.getAllPlayers().forEach(p -> timeTracker.playerJoined(p.getUniqueId(), p.getUsername(),
+                    p.getCurrentServer().map(s -> s.getServerInfo().getName()).orElse(null)));
+
+            // %tensa_top_<n>_name% / %tensa_top_<n>_time%, served from the in-memory leaderboard
+            PlaceholderManager.registerRawPrefixResolver("tensa_top_", (player, key) -> topPlaceholder(timeTracker, key));
+            PlaceholderManager.registerAnglePrefixResolver("tensa_top_", (player, key) -> topPlaceholder(timeTracker, key));
+            PlaceholderManager.register("tensa_playtime", player ->
+                    player == null ? "" : timeTracker.livePlayTime(player.getUniqueId()));
+            // %tensa_playtime_day% / _week%, and _day_<server>% / _week_<server>% for one backend
+            for (PlayTimeRollups.Period period : PlayTimeRollups.Period.values()) {
+                String key = "tensa_playtime_" + period.name().toLowerCase(java.util.Locale.ROOT);
+                PlaceholderManager.register(key, player -> periodPlaceholder(timeTracker, player, period, PlayTimeRollups.ALL_SERVERS));
+                PlaceholderManager.registerRawPrefixResolver(key + "_", (player, server) -> periodPlaceholder(timeTracker, player, period, server));
+                PlaceholderManager.registerAnglePrefixResolver(key + "_", (player, server) -> periodPlaceholder(timeTracker, player, period, server));
+            }
+            PlaceholderManager.register("tensa_playtime_rank", player -> {
+                if (player == null) return "";
+                int rank = timeTracker.rank(player.getUniqueId());
+                return rank < 0 ? "" : String.valueOf(rank);
+            });
 
-            ((AbstractModule) IMPL).scheduleRepeating(timeTracker::updateAllOnlineTimes, 1, 1, TimeUnit.MINUTES);
+            long interval = Math.max(5, cfg.flushIntervalSeconds);
+            ((AbstractModule) IMPL).scheduleRepeating(timeTracker::updateAllOnlineTimes, interval, interval, TimeUnit.SECONDS);
+            if (journal != null) {
+                long journalInterval = Math.max(1, cfg.journalIntervalSeconds);
+                ((AbstractModule) IMPL).scheduleRepeating(timeTracker::journalSessions,
+                        journalInterval, journalInterval, TimeUnit.SECONDS);
+            }
         } else {
             ua.co.tensa.Message.warn("PlayerTime module. A database connection could not be established");
             disable();
         }
     }
 
+    private static String periodPlaceholder(PlayerTimeTracker timeTracker, com.velocitypowered.api.proxy.Player player,
+                                            PlayTimeRollups.Period period, String server) {
+        if (player == null) return "";
+        long time = timeTracker.periodTime(player.getUniqueId(), period, server);
+        return time < 0 ? "" : formatTime(time);
+    }
+
+    private static String topPlaceholder(PlayerTimeTracker timeTracker, String key) {
+        int sep = key.indexOf('_');
+        if (sep <= 0) return "";
+        int position;
+        try {
+            position = Integer.parseInt(key.substring(0, sep));
+        } catch (NumberFormatException e) {
+            return "";
+        }
+        PlayerTimeTracker.PlayerTimeEntry entry = timeTracker.topEntry(position);
+        if (entry == null) return "";
+        return switch (key.substring(sep + 1)) {
+            case "name" -> entry.playerName();
+            case "time" -> formatTime(entry.playTime());
+            default -> "";
+        };
+    }
+
     public static String formatTime(long timeMillis) {
         long seconds = timeMillis / 1000;
         long minutes = seconds / 60;
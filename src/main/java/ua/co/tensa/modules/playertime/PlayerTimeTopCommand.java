@@ -6,6 +6,11 @@ import com.velocitypowered.api.command.SimpleCommand;
 import ua.co.tensa.Message;
 import ua.co.tensa.Tensa;
 import ua.co.tensa.config.Lang;
+import ua.co.tensa.modules.playertime.data.PlayerTimeConfig;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 public class PlayerTimeTopCommand implements SimpleCommand {
 
@@ -22,26 +27,81 @@ public class PlayerTimeTopCommand implements SimpleCommand {
             Message.sendLang(sender, Lang.no_perms);
             return;
         }
-        int limit = 10;
+        String[] args = invocation.arguments();
+        int pageSize = Math.max(1, Math.min(100, PlayerTimeConfig.get().topPageSize));
+
+        // /tptop day|week [server]: current period from the rollup tables
+        PlayTimeRollups.Period period = args.length > 0 ? period(args[0]) : null;
+        if (period != null) {
+            String server = args.length > 1 ? args[1] : PlayTimeRollups.ALL_SERVERS;
+            Lang title = period == PlayTimeRollups.Period.DAY ? Lang.player_time_top_day : Lang.player_time_top_week;
+            this.timeTracker.getTopPlayers(period, server, pageSize)
+                    .thenAccept(entries -> Message.sendLines(sender, render(title, 1, entries, null)));
+            return;
+        }
 
-        this.timeTracker.getTopPlayers(limit).thenAccept(entries -> {
-            if (entries == null || entries.isEmpty()) {
-                Message.sendLang(sender, Lang.player_time_top);
+        // /tptop [page]
+        int page = 1;
+        if (args.length > 0) {
+            try {
+                page = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                page = 0;
+            }
+            if (page < 1) {
+                Message.sendLang(sender, Lang.player_time_top_usage);
                 return;
             }
-            Message.sendLang(sender, Lang.player_time_top);
-            int position = 1;
+        }
+        this.timeTracker.getTopPage(page, pageSize).thenAccept(result -> {
+            int first = (result.page() - 1) * pageSize + 1;
+            String footer = Message.langText(Lang.player_time_top_page,
+                    "{page}", String.valueOf(result.page()),
+                    "{pages}", result.pages() < 0 ? "?" : String.valueOf(result.pages()));
+            Message.sendLines(sender, render(Lang.player_time_top, first, result.entries(), footer));
+        });
+    }
+
+    private static List<String> render(Lang title, int first, List<PlayerTimeTracker.PlayerTimeEntry> entries, String footer) {
+        List<String> lines = new java.util.ArrayList<>(entries == null ? 2 : entries.size() + 2);
+        lines.add(Message.langText(title));
+        if (entries != null) {
+            int position = first;
             for (PlayerTimeTracker.PlayerTimeEntry entry : entries) {
-                String playTime = PlayerTimeModule.formatTime(entry.playTime());
-                Message.sendLang(sender, Lang.player_time_top_entry,
-                        "{position}", String.valueOf(position),
+                lines.add(Message.langText(Lang.player_time_top_entry,
+                        "{position}", String.valueOf(position++),
                         "{player}", entry.playerName(),
-                        "{time}", playTime);
-                position += 1;
+                        "{time}", PlayerTimeModule.formatTime(entry.playTime())));
             }
-        });
+        }
+        if (footer != null) lines.add(footer);
+        return lines;
+    }
 
+    @Override
+    public CompletableFuture<List<String>> suggestAsync(Invocation invocation) {
+        String[] args = invocation.arguments();
+        if (args.length <= 1) {
+            String prefix = args.length == 0 ? "" : args[0].toLowerCase(Locale.ROOT);
+            return CompletableFuture.completedFuture(
+                    java.util.stream.Stream.of("1", "2", "day", "week").filter(s -> s.startsWith(prefix)).toList());
+        }
+        if (args.length == 2 && period(args[0]) != null) {
+            String prefix = args[1].toLowerCase(Locale.ROOT);
+            return CompletableFuture.completedFuture(Tensa.server.getAllServers().stream()
+                    .map(s -> s.getServerInfo().getName())
+                    .filter(name -> name.toLowerCase(Locale.ROOT).startsWith(prefix))
+                    .toList());
+        }
+        return CompletableFuture.completedFuture(List.of());
+    }
 
+    private static PlayTimeRollups.Period period(String arg) {
+        return switch (arg.toLowerCase(Locale.ROOT)) {
+            case "day", "today" -> PlayTimeRollups.Period.DAY;
+            case "week" -> PlayTimeRollups.Period.WEEK;
+            default -> null;
+        };
     }
 
     public static void unregister() {
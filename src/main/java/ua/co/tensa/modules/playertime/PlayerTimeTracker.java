@@ -1,6 +1,8 @@
 package ua.co.tensa.modules.playertime;
 
 import ua.co.tensa.config.Database;
+import ua.co.tensa.players.PlayerNameIndex;
+import ua.co.tensa.players.PlayerPrefetch;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -10,57 +12,287 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class PlayerTimeTracker {
-    private final Map<UUID, Long> playerOnlineTime;
+    // Online players; "since" is the join time or the last checkpoint, whichever is later
+    private final Map<UUID, Session> playerOnlineTime;
     private final Database database;
+    private final PlayTimeAccumulator accumulator;
+    private final PlayTimeLeaderboard leaderboard;
+    private final PlayTimeRankIndex rankIndex = new PlayTimeRankIndex();
+    private final PlayTimeCache cache;
+    private final PlayTimeJournal journal; // null when journaling is off
+    private final PlayTimeRollups rollups;
+    private final Runnable closeHook = this::onDatabaseClose;
+    private volatile boolean detached;
+
+    // Statements used on every join, quit and flush; SQL is built once
+    private final Database.Query upsertName;
+    private final Database.Query playTimeByUuid;
+    private final Database.Query playTimeByName;
+    private final Database.Query topSeek;
+    private final Database.Query topOffset;
 
     public record PlayerTimeEntry(String playerName, long playTime) {}
 
-    public PlayerTimeTracker(Database database) {
+    /** One page of the all-time top list; {@code pages} is -1 while the rank index loads. */
+    public record TopPage(int page, int pages, List<PlayerTimeEntry> entries) {}
+
+    // server is null until the player reaches a backend
+    private record Session(String name, long since, String server) {}
+
+    PlayerTimeTracker(Database database, int leaderboardSize, int cacheSize, PlayTimeJournal journal) {
         this.playerOnlineTime = new ConcurrentHashMap<>();
         this.database = database;
+        this.journal = journal;
+        this.accumulator = new PlayTimeAccumulator(database, journal);
+        this.leaderboard = new PlayTimeLeaderboard(leaderboardSize, this::unsavedTime, playerOnlineTime::containsKey);
+        this.cache = new PlayTimeCache(cacheSize);
+        this.rollups = new PlayTimeRollups(database, playerOnlineTime::containsKey);
+        accumulator.onFlushed((seq, flushed) -> {
+            cache.flushed(flushed);
+            leaderboard.flushed(flushed);
+            rankIndex.flushed(seq, flushed);
+        });
+        this.upsertName = database.upsertQuery("player_times", "uuid, name, play_time", "uuid", "name");
+        this.playTimeByUuid = database.selectQuery("player_times", "play_time", "uuid = ?");
+        this.playTimeByName = database.selectQuery("player_times", "uuid, name, play_time", "name = ?");
+        // Keyset cursor (play_time, uuid) < (?, ?), written out so the range walks play_time_idx
+        // backwards from the cursor; both columns sort descending so no filesort is needed
+        this.topSeek = database.selectQuery("player_times", "name, play_time",
+                "play_time > 0 AND play_time <= ? AND (play_time < ? OR uuid < ?)"
+                        + " ORDER BY play_time DESC, uuid DESC LIMIT ?");
+        this.topOffset = database.selectQuery("player_times", "name, play_time",
+                "play_time > 0 ORDER BY play_time DESC, uuid DESC LIMIT ? OFFSET ?");
+        // Reload and proxy shutdown close the pool; write what is buffered first
+        database.addCloseHook(closeHook);
+    }
+
+    /**
+     * Writes back journal records a crash left behind, then loads the leaderboard and rank
+     * index; top lists fall back to SQL until then, ranks stay empty.
+     */
+    public CompletableFuture<Void> start() {
+        int recovered = accumulator.recover();
+        if (recovered > 0) {
+            // Before the scans below, so they see the recovered time
+            accumulator.flushSync();
+            ua.co.tensa.Message.database("PLAYTIME RECOVERED", recovered + " journaled play time records replayed");
+        }
+        return CompletableFuture.allOf(logged(leaderboard.load(database, accumulator)), seedRanks());
+    }
+
+    /**
+     * Re-reads everything held from player_times after it was changed outside the tracker,
+     * e.g. by a CSV import: offline cache entries are dropped, the leaderboard and rank index
+     * are loaded again and online players' stored totals are read afresh.
+     */
+    public CompletableFuture<Void> reloadStored() {
+        cache.clearOffline();
+        CompletableFuture<Void> top = logged(leaderboard.reload(database, accumulator)
+                .thenCompose(ignored -> database.executor().submit(() -> accumulator.holdingCommits(seq -> {
+                    // Under the same lock as the loads, so no flush lands between a read and its pin
+                    playerOnlineTime.forEach((uuid, session) -> {
+                        Long total = database.query(playTimeByUuid, rs -> rs.next() ? rs.getLong(1) : 0L, uuid.toString());
+                        if (total != null) storedTotalLoaded(uuid, session.name(), total);
+                    });
+                    return null;
+                }), false)));
+        return CompletableFuture.allOf(top, seedRanks());
+    }
+
+    private static CompletableFuture<Void> logged(CompletableFuture<?> load) {
+        return load.handle((ignored, ex) -> {
+            if (ex != null) {
+                ua.co.tensa.Message.error("Failed to load play time leaderboard: " + ex.getMessage());
+            }
+            return null;
+        });
+    }
+
+    private CompletableFuture<Void> seedRanks() {
+        return rankIndex.seed(database, accumulator).handle((rows, ex) -> {
+            if (ex != null) {
+                ua.co.tensa.Message.error("Failed to build play time rank index: " + ex.getMessage());
+            }
+            return null;
+        });
     }
 
     public void playerJoined(UUID playerId, String playerName) {
-        playerOnlineTime.put(playerId, System.currentTimeMillis());
+        playerJoined(playerId, playerName, null);
+    }
+
+    public void playerJoined(UUID playerId, String playerName, String server) {
+        playerOnlineTime.put(playerId, new Session(playerName, System.currentTimeMillis(), server));
         updatePlayerNameInDatabase(playerId, playerName);
+        rollups.load(playerId);
+        leaderboard.rename(playerId, playerName);
+        // An offline copy has been kept current from flushes, so it beats a fresh read
+        PlayTimeCache.Stored offline = cache.byName(playerName);
+        if (offline != null && offline.uuid().equals(playerId)) {
+            storedTotalLoaded(playerId, playerName, offline.total());
+            return;
+        }
+        CompletableFuture<PlayerPrefetch.Prefetched> prefetch = PlayerPrefetch.lookup(playerId);
+        CompletableFuture<Long> total = prefetch == null ? readStoredTotal(playerId)
+                : prefetch.handle((p, ex) -> p).thenCompose(p -> p == null ? readStoredTotal(playerId)
+                        : CompletableFuture.completedFuture(p.playTime() == null ? 0L : p.playTime()));
+        total.thenAccept(t -> storedTotalLoaded(playerId, playerName, t));
+    }
+
+    private CompletableFuture<Long> readStoredTotal(UUID playerId) {
+        return database.queryCachedAsync(playTimeByUuid, rs -> rs.next() ? rs.getLong(1) : 0L, playerId.toString());
+    }
+
+    // Online players' totals change, so both the cache and the leaderboard keep their stored value
+    private void storedTotalLoaded(UUID playerId, String playerName, long total) {
+        if (!playerOnlineTime.containsKey(playerId)) return;
+        cache.pin(playerId, playerName, total);
+        leaderboard.known(playerId, playerName, total);
+    }
+
+    /** Time not yet in player_times: buffered deltas plus the running session. */
+    public long unsavedTime(UUID playerId) {
+        long unsaved = accumulator.pending(playerId);
+        Session session = playerOnlineTime.get(playerId);
+        if (session != null) {
+            unsaved += Math.max(0, System.currentTimeMillis() - session.since());
+        }
+        return unsaved;
+    }
+
+    /** Rank of the player counting unsaved time, or -1 while the index is loading. */
+    public int rank(UUID playerId) {
+        if (!rankIndex.isSeeded()) return -1;
+        return rankIndex.rankOf(rankIndex.stored(playerId) + unsavedTime(playerId));
+    }
+
+    /** Rank a player with this total would have, or -1 while the index is loading. */
+    public int rankForTime(long playTime) {
+        return rankIndex.isSeeded() ? rankIndex.rankOf(playTime) : -1;
+    }
+
+    /** Leaderboard entry at a 1-based position, or null if unknown. */
+    public PlayerTimeEntry topEntry(int position) {
+        return leaderboard.isLoaded() ? leaderboard.at(position) : null;
     }
 
 
     public void playerLeft(UUID playerId) {
         // Atomic remove to prevent race condition
-        Long joinTime = playerOnlineTime.remove(playerId);
-        if (joinTime != null) {
-            long totalTimeOnline = System.currentTimeMillis() - joinTime;
-            updatePlayerTimeInDatabase(playerId, totalTimeOnline);
+        Session session = playerOnlineTime.remove(playerId);
+        if (session != null) {
+            // Folded into the next scheduled flush instead of a statement of its own
+            record(playerId, session, System.currentTimeMillis());
         }
+        cache.unpin(playerId);
+        rollups.forget(playerId);
     }
 
-    private void updatePlayerNameInDatabase(UUID playerId, String playerName) {
-        if (database.exists("player_times", "uuid = ?", playerId.toString())) {
-            database.updateAsync("player_times", "name = ?", "uuid = ?", playerName, playerId.toString());
-        } else {
-            database.insertAsync("player_times", "uuid, name, play_time", playerId.toString(), playerName, 0);
+    /** Closes the span on the previous backend; time from now on counts for {@code server}. */
+    public void serverSwitched(UUID playerId, String server) {
+        long now = System.currentTimeMillis();
+        playerOnlineTime.computeIfPresent(playerId, (id, session) -> {
+            record(id, session, now);
+            return new Session(session.name(), now, server);
+        });
+    }
+
+    private void record(UUID playerId, Session session, long now) {
+        accumulator.add(playerId, session.name(), now - session.since());
+        rollups.add(playerId, session.server(), session.since(), now);
+    }
+
+    /**
+     * Time in the current day or week, on one server or {@link PlayTimeRollups#ALL_SERVERS},
+     * including the running session; -1 until the player's buckets are loaded.
+     */
+    public long periodTime(UUID playerId, PlayTimeRollups.Period period, String server) {
+        long total = rollups.current(playerId, period, server);
+        if (total < 0) return -1;
+        Session session = playerOnlineTime.get(playerId);
+        if (session != null && session.server() != null
+                && (PlayTimeRollups.ALL_SERVERS.equals(server) || session.server().equals(server))) {
+            total += Math.max(0, System.currentTimeMillis() - Math.max(session.since(), rollups.bucketStart(period)));
         }
+        return total;
     }
 
-    private void updatePlayerTimeInDatabase(UUID playerId, long timeOnline) {
-        database.updateAsync("player_times", "play_time = play_time + ?", "uuid = ?", timeOnline, playerId.toString());
+    /** Top players of the current day or week, as of the last flush. */
+    public CompletableFuture<List<PlayerTimeEntry>> getTopPlayers(PlayTimeRollups.Period period, String server, int limit) {
+        if (limit < 1 || limit > 1000) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        return rollups.top(period, server, limit).exceptionally(ex -> {
+            ua.co.tensa.Message.error("Failed to get top players: " + ex.getMessage());
+            return new ArrayList<>();
+        });
     }
 
+    /** Formatted live play time for placeholders; empty until the stored total is loaded. */
+    public String livePlayTime(UUID playerId) {
+        PlayTimeCache.Stored stored = cache.online(playerId);
+        return stored == null ? "" : PlayerTimeModule.formatTime(stored.total() + unsavedTime(playerId));
+    }
+
+    private void updatePlayerNameInDatabase(UUID playerId, String playerName) {
+        // Single round trip; new rows start at zero, existing rows only get the name refreshed
+        database.executeAsync(upsertName, playerId.toString(), playerName, 0L);
+    }
+
+    /** Total including unsaved time; null when no such player exists. */
     public CompletableFuture<Long> getPlayerTimeByName(String playerName) {
-        return database.selectAsync("player_times", "play_time", "name = ?",
-                rs -> rs.next() ? rs.getLong(1) : 0L,
+        var player = ua.co.tensa.Tensa.server.getPlayer(playerName);
+        if (player.isPresent()) {
+            PlayTimeCache.Stored stored = cache.online(player.get().getUniqueId());
+            if (stored != null) {
+                return CompletableFuture.completedFuture(stored.total() + unsavedTime(stored.uuid()));
+            }
+        }
+        PlayTimeCache.Stored offline = cache.byName(playerName);
+        if (offline != null) {
+            return CompletableFuture.completedFuture(offline.total() + unsavedTime(offline.uuid()));
+        }
+        // The name index turns this into a primary-key read, or no read at all for unknown names
+        PlayerNameIndex.Entry known = PlayerNameIndex.find(playerName);
+        if (known != null) {
+            return database.queryCachedAsync(playTimeByUuid, rs -> rs.next() ? rs.getLong(1) : null, known.uuid().toString())
+                .thenApply(total -> {
+                    if (total == null) return null;
+                    cache.putOffline(new PlayTimeCache.Stored(known.uuid(), known.name(), total));
+                    return total + unsavedTime(known.uuid());
+                })
+                .exceptionally(ex -> {
+                    ua.co.tensa.Message.error("Failed to get player time for " + playerName + ": " + ex.getMessage());
+                    return 0L;
+                });
+        }
+        if (PlayerNameIndex.isLoaded()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return database.queryAsync(playTimeByName,
+                rs -> rs.next() ? new PlayTimeCache.Stored(UUID.fromString(rs.getString(1)), rs.getString(2), rs.getLong(3)) : null,
                 playerName)
+            .thenApply(stored -> {
+                if (stored == null) return null;
+                cache.putOffline(stored);
+                return stored.total() + unsavedTime(stored.uuid());
+            })
             .exceptionally(ex -> {
                 ua.co.tensa.Message.error("Failed to get player time for " + playerName + ": " + ex.getMessage());
                 return 0L;
             });
     }
 
+    /** Total including the running session and unflushed time. */
     public CompletableFuture<Long> getCurrentPlayerTime(UUID playerId) {
-        return database.selectAsync("player_times", "play_time", "uuid = ?",
+        PlayTimeCache.Stored stored = cache.online(playerId);
+        if (stored != null) {
+            return CompletableFuture.completedFuture(stored.total() + unsavedTime(playerId));
+        }
+        return database.queryCachedAsync(playTimeByUuid,
                 rs -> rs.next() ? rs.getLong(1) : 0L,
                 playerId.toString())
+            .thenApply(total -> total + unsavedTime(playerId))
             .exceptionally(ex -> {
                 ua.co.tensa.Message.error("Failed to get player time for " + playerId + ": " + ex.getMessage());
                 return 0L;
@@ -72,15 +304,18 @@ public class PlayerTimeTracker {
         if (limit < 1 || limit > 1000) {
             return CompletableFuture.completedFuture(new ArrayList<>());
         }
+        if (leaderboard.isLoaded() && limit <= leaderboard.capacity()) {
+            return CompletableFuture.completedFuture(leaderboard.top(limit));
+        }
 
-        String where = "play_time > 0 ORDER BY play_time DESC LIMIT ?";
-        return database.selectAsync("player_times", "name, play_time", where,
+        String where = "play_time > 0 ORDER BY play_time DESC, uuid DESC LIMIT ?";
+        return database.selectCachedAsync("player_times", "name, play_time", where,
                 rs -> {
                     List<PlayerTimeEntry> entries = new ArrayList<>();
                     while (rs.next()) {
                         entries.add(new PlayerTimeEntry(rs.getString(1), rs.getLong(2)));
                     }
-                    return entries;
+                    return List.copyOf(entries);
                 }, limit)
             .exceptionally(ex -> {
                 ua.co.tensa.Message.error("Failed to get top players: " + ex.getMessage());
@@ -88,15 +323,100 @@ public class PlayerTimeTracker {
             });
     }
 
+    /**
+     * Page of the all-time top list. Pages inside the in-memory leaderboard include live
+     * time; deeper pages take the last row of the previous page from the rank index and
+     * seek past it, so any page costs one index range read regardless of depth.
+     */
+    public CompletableFuture<TopPage> getTopPage(int page, int pageSize) {
+        if (page < 1 || pageSize < 1) {
+            return CompletableFuture.completedFuture(new TopPage(page, 0, List.of()));
+        }
+        long start = (long) (page - 1) * pageSize;
+        boolean seeded = rankIndex.isSeeded();
+        // players with any time; rankOf(0) counts everyone above zero
+        int ranked = seeded ? rankIndex.rankOf(0) - 1 : -1;
+        int pages = seeded ? Math.max(1, (ranked + pageSize - 1) / pageSize) : -1;
+        if (seeded && start >= ranked) {
+            return CompletableFuture.completedFuture(new TopPage(page, pages, List.of()));
+        }
+        if (leaderboard.isLoaded() && start + pageSize <= leaderboard.capacity()) {
+            List<PlayerTimeEntry> top = leaderboard.top((int) start + pageSize);
+            List<PlayerTimeEntry> entries = start >= top.size() ? List.of() : top.subList((int) start, top.size());
+            return CompletableFuture.completedFuture(new TopPage(page, pages, entries));
+        }
+        if (start > Integer.MAX_VALUE) {
+            return CompletableFuture.completedFuture(new TopPage(page, pages, List.of()));
+        }
+        CompletableFuture<List<PlayerTimeEntry>> rows;
+        PlayTimeRankIndex.Key after = seeded && start > 0 ? rankIndex.keyAt((int) start - 1) : null;
+        if (after != null) {
+            rows = database.queryCachedAsync(topSeek, PlayerTimeTracker::readEntries,
+                    after.total(), after.total(), after.uuid(), pageSize);
+        } else {
+            // The first page, or any page until the rank index is seeded at startup
+            rows = database.queryCachedAsync(topOffset, PlayerTimeTracker::readEntries, pageSize, (int) start);
+        }
+        return rows.thenApply(entries -> new TopPage(page, pages, entries == null ? List.of() : entries))
+            .exceptionally(ex -> {
+                ua.co.tensa.Message.error("Failed to get top players: " + ex.getMessage());
+                return new TopPage(page, pages, List.of());
+            });
+    }
+
+    private static List<PlayerTimeEntry> readEntries(java.sql.ResultSet rs) throws java.sql.SQLException {
+        List<PlayerTimeEntry> entries = new ArrayList<>();
+        while (rs.next()) {
+            entries.add(new PlayerTimeEntry(rs.getString(1), rs.getLong(2)));
+        }
+        return List.copyOf(entries);
+    }
+
+    /** Scheduled between flushes: moves running session time into the journal. */
+    public void journalSessions() {
+        if (journal == null) return;
+        checkpoint();
+        journal.sync();
+    }
+
+    /** Scheduled flush: checkpoints online sessions and writes every pending delta in one batch. */
     public void updateAllOnlineTimes() {
+        checkpoint();
+        accumulator.flush();
+        rollups.flush();
+    }
+
+    /** Synchronous drain for module disable, reload and proxy shutdown. */
+    public void flushNow() {
+        checkpoint();
+        accumulator.flushSync();
+        rollups.flushSync();
+    }
+
+    /** Flushes and detaches from the database; the tracker is not used afterwards. */
+    public void shutdown() {
+        database.removeCloseHook(closeHook);
+        if (!detached) {
+            detached = true;
+            flushNow();
+        }
+        // Whatever did not commit stays in the journal for the next start
+        if (journal != null) journal.close();
+    }
+
+    private void onDatabaseClose() {
+        flushNow();
+        detached = true;
+    }
+
+    private void checkpoint() {
         long currentTime = System.currentTimeMillis();
-        for (Map.Entry<UUID, Long> entry : playerOnlineTime.entrySet()) {
-            Long joinTime = entry.getValue();
-            if (joinTime != null) {
-                long totalTimeOnline = currentTime - joinTime;
-                updatePlayerTimeInDatabase(entry.getKey(), totalTimeOnline);
-                playerOnlineTime.put(entry.getKey(), currentTime);
-            }
+        for (UUID uuid : playerOnlineTime.keySet()) {
+            // computeIfPresent keeps a concurrent disconnect from counting the same span twice
+            playerOnlineTime.computeIfPresent(uuid, (id, session) -> {
+                record(id, session, currentTime);
+                return new Session(session.name(), currentTime, session.server());
+            });
         }
     }
 
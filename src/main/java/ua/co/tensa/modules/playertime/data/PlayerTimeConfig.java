@@ -0,0 +1,38 @@
+package ua.co.tensa.modules.playertime.data;
+
+import ua.co.tensa.config.model.ConfigBase;
+import ua.co.tensa.config.model.ann.CfgKey;
+
+/**
+ * Typed model for player time configuration.
+ */
+public class PlayerTimeConfig extends ConfigBase {
+    private static PlayerTimeConfig instance;
+
+    @CfgKey(value = "flush_interval_seconds", comment = "How often accumulated play time is written to the database")
+    public int flushIntervalSeconds = 60;
+
+    @CfgKey(value = "journal.enable", comment = "Keep unflushed play time in a local journal that is replayed after a crash")
+    public boolean journalEnable = true;
+
+    @CfgKey(value = "journal.interval_seconds", comment = "How often online sessions are written to the journal")
+    public int journalIntervalSeconds = 10;
+
+    @CfgKey(value = "leaderboard_size", comment = "Players kept in the in-memory top list (/tptop, %tensa_top_<n>_name%)")
+    public int leaderboardSize = 100;
+
+    @CfgKey(value = "top_page_size", comment = "Rows per /tptop page")
+    public int topPageSize = 10;
+
+    @CfgKey(value = "offline_cache_size", comment = "Offline players' totals kept in memory for /tptime <player>")
+    public int offlineCacheSize = 1000;
+
+    private PlayerTimeConfig() {
+        super("player_time/config.yml");
+    }
+
+    public static synchronized PlayerTimeConfig get() {
+        if (instance == null) instance = new PlayerTimeConfig();
+        return instance;
+    }
+}
@@ -0,0 +1,127 @@
+package ua.co.tensa.players;
+
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.connection.PostLoginEvent;
+import ua.co.tensa.Message;
+import ua.co.tensa.config.Database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Case-insensitive name to UUID index of every player in player_times, loaded once from
+ * the table and kept current from joins. Prefix lookups are ordered range scans, so
+ * commands can resolve offline names and tab-complete them without SQL.
+ *
+ * <p>A sorted map stands in for a character trie: the same prefix scans, one entry per
+ * name instead of one node per character, and lock-free reads.
+ */
+public final class PlayerNameIndex {
+
+    public record Entry(UUID uuid, String name) {}
+
+    private static final NavigableMap<String, Entry> ONLINE = new ConcurrentSkipListMap<>();
+    // Guards swapping in a loaded map against joins recorded at the same time
+    private static final Object LOCK = new Object();
+    private static volatile NavigableMap<String, Entry> known = new ConcurrentSkipListMap<>();
+    private static NavigableMap<String, Entry> loading; // map being streamed into, under LOCK
+    private static volatile boolean loaded;
+
+    /**
+     * Streams every stored name into a fresh map and swaps it in once the scan completes, so
+     * lookups keep using the previous map meanwhile. Joins seen during the scan go into both
+     * and take precedence. A failed scan keeps the previous map and leaves the index unloaded.
+     */
+    public static void load(Database database) {
+        if (database == null || !database.enabled) return;
+        NavigableMap<String, Entry> fresh = new ConcurrentSkipListMap<>();
+        synchronized (LOCK) {
+            loaded = false;
+            loading = fresh;
+        }
+        database.streamAsync("player_times", "uuid, name", "name IS NOT NULL", row -> {
+            String name = row.getString(2);
+            UUID uuid = parseUuid(row.getString(1));
+            if (uuid != null && !name.isEmpty()) {
+                fresh.putIfAbsent(key(name), new Entry(uuid, name));
+            }
+        }).whenComplete((rows, ex) -> {
+            synchronized (LOCK) {
+                // A later load has replaced this one
+                if (loading != fresh) return;
+                loading = null;
+                if (ex != null || rows == null || rows < 0) {
+                    Message.warn("Player name index could not be loaded; offline names resolve after they join");
+                    return;
+                }
+                known = fresh;
+                loaded = true;
+            }
+        });
+    }
+
+    /** True once every stored name is indexed, so a miss means the player never joined. */
+    public static boolean isLoaded() {
+        return loaded;
+    }
+
+    public static Entry find(String name) {
+        return name == null ? null : known.get(key(name));
+    }
+
+    public static Entry findOnline(String name) {
+        return name == null ? null : ONLINE.get(key(name));
+    }
+
+    /** Known names starting with {@code prefix}, in alphabetical order. */
+    public static List<String> complete(String prefix, int limit) {
+        return complete(known, prefix, limit);
+    }
+
+    /** Online names starting with {@code prefix}, in alphabetical order. */
+    public static List<String> completeOnline(String prefix, int limit) {
+        return complete(ONLINE, prefix, limit);
+    }
+
+    @Subscribe
+    public void onJoin(PostLoginEvent event) {
+        Entry entry = new Entry(event.getPlayer().getUniqueId(), event.getPlayer().getUsername());
+        synchronized (LOCK) {
+            known.put(key(entry.name()), entry);
+            if (loading != null) loading.put(key(entry.name()), entry);
+        }
+        ONLINE.put(key(entry.name()), entry);
+    }
+
+    @Subscribe
+    public void onQuit(DisconnectEvent event) {
+        ONLINE.remove(key(event.getPlayer().getUsername()), new Entry(event.getPlayer().getUniqueId(), event.getPlayer().getUsername()));
+    }
+
+    private static List<String> complete(NavigableMap<String, Entry> index, String prefix, int limit) {
+        String from = prefix == null ? "" : key(prefix);
+        List<String> names = new ArrayList<>(Math.min(limit, 64));
+        for (var e : index.tailMap(from, true).entrySet()) {
+            if (names.size() >= limit || !e.getKey().startsWith(from)) break;
+            names.add(e.getValue().name());
+        }
+        return names;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static UUID parseUuid(String value) {
+        try {
+            return value == null ? null : UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
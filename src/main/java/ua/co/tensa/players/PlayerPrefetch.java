@@ -0,0 +1,95 @@
+package ua.co.tensa.players;
+
+import com.velocitypowered.api.event.EventTask;
+import com.velocitypowered.api.event.PostOrder;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.connection.LoginEvent;
+import com.velocitypowered.api.event.connection.PostLoginEvent;
+import ua.co.tensa.Tensa;
+import ua.co.tensa.config.Database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads a joining player's play time row and all of their user meta in one round trip
+ * as soon as LoginEvent fires. PostLoginEvent handlers pick the result up through
+ * {@link #lookup} instead of issuing reads of their own, so caches are warm before the
+ * player reaches a backend. Results are dropped once PostLoginEvent has been handled.
+ */
+public final class PlayerPrefetch {
+
+    /** What the database held at login; {@code playTime} is null when the player has no row. */
+    public record Prefetched(Long playTime, Map<String, String> meta) {}
+
+    private record Pending(CompletableFuture<Prefetched> future, long startedAt) {}
+
+    // Login to post-login is normally milliseconds; anything older was abandoned mid-login
+    private static final long EXPIRE_MS = 60_000;
+    private static final Map<UUID, Pending> PENDING = new ConcurrentHashMap<>();
+
+    /**
+     * Prefetch started for this player at login, or null. The future may complete with
+     * null or exceptionally if the read failed; callers then fall back to their own read.
+     */
+    public static CompletableFuture<Prefetched> lookup(UUID uuid) {
+        Pending pending = PENDING.get(uuid);
+        return pending == null ? null : pending.future();
+    }
+
+    @Subscribe
+    public EventTask onLogin(LoginEvent event) {
+        if (!event.getResult().isAllowed()) return null;
+        Database db = Tensa.database;
+        if (db == null || !db.enabled || !wanted()) return null;
+        UUID uuid = event.getPlayer().getUniqueId();
+        // Off the event thread: a saturated DB queue may block the submit
+        return EventTask.async(() -> start(db, uuid));
+    }
+
+    // Runs after every other PostLoginEvent handler, which have taken what they need
+    @Subscribe(order = PostOrder.LAST)
+    public void onPostLogin(PostLoginEvent event) {
+        PENDING.remove(event.getPlayer().getUniqueId());
+    }
+
+    @Subscribe
+    public void onDisconnect(DisconnectEvent event) {
+        PENDING.remove(event.getPlayer().getUniqueId());
+    }
+
+    private static void start(Database db, UUID uuid) {
+        long now = System.currentTimeMillis();
+        PENDING.values().removeIf(p -> now - p.startedAt() > EXPIRE_MS);
+        Database.Query query = db.unionAllQuery(
+                db.selectQuery("player_times", "1 AS kind, play_time AS amount, NULL AS meta_key, NULL AS meta_value", "uuid = ?"),
+                db.selectQuery("user_meta", "2 AS kind, NULL AS amount, meta_key, meta_value", "uuid = ?"));
+        String id = uuid.toString();
+        PENDING.put(uuid, new Pending(db.queryAsync(query, PlayerPrefetch::read, id, id), now));
+    }
+
+    private static Prefetched read(ResultSet rs) throws SQLException {
+        Long playTime = null;
+        Map<String, String> meta = new HashMap<>();
+        while (rs.next()) {
+            if (rs.getInt(1) == 1) {
+                playTime = rs.getLong(2);
+            } else if (rs.getString(3) != null && rs.getString(4) != null) {
+                meta.put(rs.getString(3), rs.getString(4));
+            }
+        }
+        return new Prefetched(playTime, Collections.unmodifiableMap(meta));
+    }
+
+    private static boolean wanted() {
+        return Tensa.config != null
+                && (Tensa.config.isModuleEnabled("player-time") || Tensa.config.isModuleEnabled("user-meta"));
+    }
+}
@@ -0,0 +1,137 @@
+package ua.co.tensa.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long TIMEOUT_MS = 5_000;
+
+    private CircuitBreaker breaker;
+
+    @AfterEach
+    void shutdown() {
+        if (breaker != null) breaker.shutdown();
+    }
+
+    @Test
+    void staysClosedBelowTheThreshold() {
+        breaker = new CircuitBreaker(3, 100, 1_000, () -> true);
+
+        breaker.recordFailure("timeout");
+        breaker.recordFailure("timeout");
+        breaker.recordSuccess();
+        breaker.recordFailure("timeout");
+        breaker.recordFailure("timeout");
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    void opensAtTheThresholdAndClosesAfterASuccessfulProbe() throws InterruptedException {
+        AtomicInteger probes = new AtomicInteger();
+        breaker = new CircuitBreaker(2, 100, 1_000, () -> {
+            probes.incrementAndGet();
+            return true;
+        });
+
+        breaker.recordFailure("timeout");
+        breaker.recordFailure("timeout");
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.allowRequest());
+        awaitState(CircuitBreaker.State.CLOSED);
+        assertTrue(breaker.allowRequest());
+        assertEquals(1, probes.get());
+    }
+
+    @Test
+    void failedProbeReopensAndRetries() throws InterruptedException {
+        AtomicInteger probes = new AtomicInteger();
+        AtomicBoolean reachable = new AtomicBoolean();
+        breaker = new CircuitBreaker(1, 100, 200, () -> {
+            probes.incrementAndGet();
+            return reachable.get();
+        });
+
+        breaker.trip("refused");
+        awaitProbes(probes, 2);
+        assertFalse(breaker.allowRequest());
+
+        reachable.set(true);
+        awaitState(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void probeThatThrowsCountsAsFailed() throws InterruptedException {
+        AtomicInteger probes = new AtomicInteger();
+        breaker = new CircuitBreaker(1, 100, 200, () -> {
+            probes.incrementAndGet();
+            throw new IllegalStateException("driver error");
+        });
+
+        breaker.trip("refused");
+        awaitProbes(probes, 2);
+
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    void secondTripSchedulesNoExtraProbe() throws InterruptedException {
+        AtomicInteger probes = new AtomicInteger();
+        breaker = new CircuitBreaker(1, 100, 1_000, () -> {
+            probes.incrementAndGet();
+            return true;
+        });
+
+        breaker.trip("refused");
+        breaker.trip("refused");
+        awaitState(CircuitBreaker.State.CLOSED);
+        // Long enough for a second probe scheduled at the same backoff to have run
+        Thread.sleep(300);
+
+        assertEquals(1, probes.get());
+    }
+
+    @Test
+    void tripAfterShutdownIsIgnored() {
+        AtomicInteger probes = new AtomicInteger();
+        BooleanSupplier probe = () -> {
+            probes.incrementAndGet();
+            return true;
+        };
+        breaker = new CircuitBreaker(1, 100, 1_000, probe);
+        breaker.shutdown();
+
+        breaker.trip("refused");
+        breaker.recordFailure("refused");
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(0, probes.get());
+    }
+
+    private void awaitState(CircuitBreaker.State expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (breaker.state() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, breaker.state());
+    }
+
+    private static void awaitProbes(AtomicInteger probes, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (probes.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(probes.get() >= count, "probes run: " + probes.get());
+    }
+}
@@ -0,0 +1,80 @@
+package ua.co.tensa.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DataTransferCsvTest {
+
+    @Test
+    void recordsSurviveWriteAndRead() throws IOException {
+        List<String[]> records = List.of(
+                new String[]{"uuid", "meta_key", "meta_value"},
+                new String[]{"4f1c2b9e-0000-0000-0000-000000000001", "plain", "value"},
+                new String[]{"a,b", "say \"hi\"", "line one\nline two"},
+                new String[]{"carriage\rreturn", "", null},
+                new String[]{null, null, null},
+                new String[]{"юнікод", "\"", ","});
+        StringWriter out = new StringWriter();
+        for (String[] record : records) {
+            DataTransfer.writeRecord(out, record);
+        }
+
+        List<List<String>> read = readAll(out.toString());
+
+        assertEquals(records.size(), read.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(Arrays.asList(records.get(i)), read.get(i), "record " + i);
+        }
+    }
+
+    @Test
+    void emptyUnquotedFieldIsNullAndQuotedEmptyIsEmptyString() throws IOException {
+        StringWriter out = new StringWriter();
+        DataTransfer.writeRecord(out, new String[]{null, "", "x"});
+
+        assertEquals(",\"\",x\n", out.toString());
+        assertEquals(Arrays.asList(null, "", "x"), readAll(out.toString()).get(0));
+    }
+
+    @Test
+    void readsCrLfAndMissingFinalNewline() throws IOException {
+        List<List<String>> read = readAll("a,b\r\n1,2\r\n3,4");
+
+        assertEquals(List.of(List.of("a", "b"), List.of("1", "2"), List.of("3", "4")), read);
+    }
+
+    @Test
+    void returnsNullAtEndOfInput() throws IOException {
+        DataTransfer.CsvReader reader = new DataTransfer.CsvReader(new StringReader("only\n"));
+
+        assertEquals(List.of("only"), reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void unterminatedQuoteFails() {
+        DataTransfer.CsvReader reader = new DataTransfer.CsvReader(new StringReader("\"open,field\n"));
+
+        assertThrows(IOException.class, reader::next);
+    }
+
+    private static List<List<String>> readAll(String csv) throws IOException {
+        DataTransfer.CsvReader reader = new DataTransfer.CsvReader(new StringReader(csv));
+        List<List<String>> records = new ArrayList<>();
+        List<String> record;
+        while ((record = reader.next()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,90 @@
+package ua.co.tensa.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryCacheTest {
+
+    private static final String SQL = "SELECT play_time FROM player_times WHERE uuid = ?";
+
+    private final QueryCache cache = new QueryCache(60, 16);
+
+    @Test
+    void storedValueIsAHit() {
+        QueryCache.Token token = cache.token("player_times", SQL, new Object[]{"a"});
+        cache.put(token, 42L);
+
+        assertEquals(42L, cache.get(cache.token("player_times", SQL, new Object[]{"a"})));
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    void writeToTheTableInvalidatesOnlyItsEntries() {
+        cache.put(cache.token("player_times", SQL, new Object[]{"a"}), 42L);
+        cache.put(cache.token("user_meta", SQL, new Object[]{"a"}), "meta");
+
+        cache.invalidate("player_times");
+
+        assertSame(QueryCache.MISS, cache.get(cache.token("player_times", SQL, new Object[]{"a"})));
+        assertEquals("meta", cache.get(cache.token("user_meta", SQL, new Object[]{"a"})));
+    }
+
+    @Test
+    void resultLoadedAcrossAWriteIsNotStored() {
+        QueryCache.Token token = cache.token("player_times", SQL, new Object[]{"a"});
+        cache.invalidate("player_times");
+        cache.put(token, 42L);
+
+        assertSame(QueryCache.MISS, cache.get(cache.token("player_times", SQL, new Object[]{"a"})));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidateAllClearsEveryTable() {
+        cache.put(cache.token("player_times", SQL, new Object[]{"a"}), 42L);
+        cache.put(cache.token("user_meta", SQL, new Object[]{"a"}), "meta");
+
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+        assertSame(QueryCache.MISS, cache.get(cache.token("player_times", SQL, new Object[]{"a"})));
+        assertSame(QueryCache.MISS, cache.get(cache.token("user_meta", SQL, new Object[]{"a"})));
+    }
+
+    @Test
+    void parametersArePartOfTheKey() {
+        Object[] params = {"a"};
+        QueryCache.Token token = cache.token("player_times", SQL, params);
+        // The token copies the parameters, so later changes to the array do not move the entry
+        params[0] = "b";
+        cache.put(token, 42L);
+
+        assertSame(QueryCache.MISS, cache.get(cache.token("player_times", SQL, new Object[]{"b"})));
+        assertEquals(42L, cache.get(cache.token("player_times", SQL, new Object[]{"a"})));
+    }
+
+    @Test
+    void nullIsNotCached() {
+        cache.put(cache.token("player_times", SQL, new Object[]{"a"}), null);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedPastTheLimit() {
+        for (int i = 0; i < 16; i++) {
+            cache.put(cache.token("player_times", SQL, new Object[]{i}), i);
+        }
+        // Touch the oldest entry so the second one becomes the eldest
+        assertEquals(0, cache.get(cache.token("player_times", SQL, new Object[]{0})));
+        cache.put(cache.token("player_times", SQL, new Object[]{16}), 16);
+
+        assertEquals(16, cache.size());
+        assertEquals(0, cache.get(cache.token("player_times", SQL, new Object[]{0})));
+        assertSame(QueryCache.MISS, cache.get(cache.token("player_times", SQL, new Object[]{1})));
+        assertTrue(cache.misses() >= 1);
+    }
+}
@@ -0,0 +1,142 @@
+package ua.co.tensa.modules.playertime;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlayTimeRankIndexTest {
+
+    private static final UUID A = UUID.fromString("00000000-0000-0000-0000-00000000000a");
+    private static final UUID B = UUID.fromString("00000000-0000-0000-0000-00000000000b");
+    private static final UUID C = UUID.fromString("00000000-0000-0000-0000-00000000000c");
+    private static final UUID D = UUID.fromString("00000000-0000-0000-0000-00000000000d");
+
+    @Test
+    void emptyIndexRanksEveryoneFirst() {
+        PlayTimeRankIndex index = seeded(Map.of());
+
+        assertEquals(1, index.rankOf(0));
+        assertEquals(1, index.rankOf(1_000));
+        assertEquals(0, index.size());
+        assertNull(index.keyAt(0));
+    }
+
+    @Test
+    void tiesShareARank() {
+        PlayTimeRankIndex index = seeded(Map.of(A, 100L, B, 50L, C, 50L, D, 0L));
+
+        assertEquals(1, index.rankOf(200));
+        assertEquals(1, index.rankOf(100));
+        assertEquals(2, index.rankOf(75));
+        assertEquals(2, index.rankOf(50));
+        assertEquals(4, index.rankOf(0));
+    }
+
+    @Test
+    void positionsFollowTotalThenUuidDescending() {
+        PlayTimeRankIndex index = seeded(Map.of(A, 100L, B, 50L, C, 50L, D, 0L));
+
+        assertEquals(new PlayTimeRankIndex.Key(100, A.toString()), index.keyAt(0));
+        assertEquals(new PlayTimeRankIndex.Key(50, C.toString()), index.keyAt(1));
+        assertEquals(new PlayTimeRankIndex.Key(50, B.toString()), index.keyAt(2));
+        assertEquals(new PlayTimeRankIndex.Key(0, D.toString()), index.keyAt(3));
+        assertNull(index.keyAt(4));
+        assertNull(index.keyAt(-1));
+    }
+
+    @Test
+    void flushedDeltasMovePlayers() {
+        PlayTimeRankIndex index = seeded(Map.of(A, 100L, B, 50L));
+
+        index.flushed(1, Map.of(B, delta(60), C, delta(5)));
+
+        assertEquals(110, index.stored(B));
+        assertEquals(5, index.stored(C));
+        assertEquals(B.toString(), index.keyAt(0).uuid());
+        assertEquals(3, index.size());
+        assertEquals(2, index.rankOf(100));
+    }
+
+    @Test
+    void deferredFlushesAtOrBelowTheScanMarkAreNotCountedTwice() {
+        PlayTimeRankIndex index = new PlayTimeRankIndex();
+        // Flush 1 committed before the scan read its rows, flush 2 after
+        index.flushed(1, Map.of(A, delta(10)));
+        index.loaded(A, 110);
+        index.flushed(2, Map.of(A, delta(5)));
+        assertFalse(index.isSeeded());
+
+        index.seedFinished(true, 1);
+
+        assertTrue(index.isSeeded());
+        assertEquals(115, index.stored(A));
+    }
+
+    @Test
+    void failedSeedStopsDeferring() {
+        PlayTimeRankIndex index = new PlayTimeRankIndex();
+        index.seedFinished(false, 0);
+
+        index.flushed(1, Map.of(A, delta(10)));
+
+        assertFalse(index.isSeeded());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void matchesASortedListUnderRandomUpdates() {
+        Random random = new Random(42);
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 200; i++) players.add(new UUID(random.nextLong(), random.nextLong()));
+        Map<UUID, Long> totals = new HashMap<>();
+        PlayTimeRankIndex index = seeded(Map.of());
+
+        for (int step = 0; step < 5_000; step++) {
+            UUID uuid = players.get(random.nextInt(players.size()));
+            // small range so ties are common
+            long delta = random.nextInt(20);
+            totals.merge(uuid, delta, Long::sum);
+            index.flushed(step + 1, Map.of(uuid, delta(delta)));
+
+            if (step % 250 == 0) assertMatches(index, totals);
+        }
+        assertMatches(index, totals);
+    }
+
+    private static void assertMatches(PlayTimeRankIndex index, Map<UUID, Long> totals) {
+        List<PlayTimeRankIndex.Key> expected = new ArrayList<>();
+        totals.forEach((uuid, total) -> expected.add(new PlayTimeRankIndex.Key(total, uuid.toString())));
+        expected.sort(Comparator.comparingLong(PlayTimeRankIndex.Key::total)
+                .thenComparing(PlayTimeRankIndex.Key::uuid).reversed());
+
+        assertEquals(expected.size(), index.size());
+        for (int i = 0; i < expected.size(); i++) {
+            PlayTimeRankIndex.Key key = expected.get(i);
+            assertEquals(key, index.keyAt(i), "position " + i);
+            long greater = expected.stream().filter(k -> k.total() > key.total()).count();
+            assertEquals(greater + 1, index.rankOf(key.total()), "rank of " + key.total());
+        }
+    }
+
+    private static PlayTimeRankIndex seeded(Map<UUID, Long> rows) {
+        PlayTimeRankIndex index = new PlayTimeRankIndex();
+        rows.forEach(index::loaded);
+        index.seedFinished(true, 0);
+        return index;
+    }
+
+    private static PlayTimeAccumulator.Delta delta(long millis) {
+        return new PlayTimeAccumulator.Delta(null, millis);
+    }
+}